@@ -0,0 +1,57 @@
+package com.bmw.mapad.cma.certificateextractor;
+
+import com.bmw.mapad.cma.entity.Cert;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Bounded pool of workers shared by the extractor strategies, which export the certificates of several sources (i.e.
+ * repositories) at the same time.
+ */
+@Slf4j
+public final class ExportWorkers {
+
+    private ExportWorkers() {
+    }
+
+    /**
+     * Export the certificates of every source concurrently through a bounded pool of workers. The certificates are
+     * merged following the order of the sources, and a source failing does not prevent the others from being exported.
+     * Once interrupted, the certificates already merged are returned and the pending sources are cancelled.
+     *
+     * @param sources  Sources to be exported.
+     * @param workers  Number of sources exported at the same time.
+     * @param exporter Export of the certificates of a single source.
+     * @return List of certificates.
+     */
+    public static <T> List<Cert> exportAll(List<T> sources, int workers, Function<T, List<Cert>> exporter) {
+        List<Cert> listCert = new ArrayList<>();
+        ExecutorService workerPool = Executors.newFixedThreadPool(Math.max(1, workers));
+        try {
+            List<Future<List<Cert>>> results = new ArrayList<>();
+            for (T source : sources) {
+                results.add(workerPool.submit(() -> exporter.apply(source)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    listCert.addAll(results.get(i).get());
+                } catch (ExecutionException e) {
+                    log.error("An error occurred exporting certificates from {}: {}", sources.get(i), e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Export of certificates has been interrupted.");
+        } finally {
+            workerPool.shutdownNow();
+        }
+        return listCert;
+    }
+}
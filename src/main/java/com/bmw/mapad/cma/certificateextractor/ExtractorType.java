@@ -5,5 +5,6 @@ package com.bmw.mapad.cma.certificateextractor;
  */
 public enum ExtractorType {
     KEYSTORE_EXTRACTOR,
-    ACM_EXTRACTOR
+    ACM_EXTRACTOR,
+    PEM_EXTRACTOR
 }
@@ -0,0 +1,97 @@
+package com.bmw.mapad.cma.certificateextractor.acm;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.STSAssumeRoleSessionCredentialsProvider;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.certificatemanager.AWSCertificateManager;
+import com.amazonaws.services.certificatemanager.AWSCertificateManagerClientBuilder;
+import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
+import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClientBuilder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Factory of the clients of Certificate Manager, one per region and account, assuming a role through STS for the other
+ * accounts. Clients never retry on their own and must be released through the factory.
+ */
+public class AcmClientFactory {
+    private static final String SESSION_NAME = "cma-acm-extractor";
+
+    private final AWSCredentialsProvider credentials;
+    private final String endpoint;
+    private final Map<AWSCertificateManager, Runnable> assumedRoles = new ConcurrentHashMap<>();
+
+    /**
+     * @param credentials Credentials configured, used as is or to assume the role of each target.
+     * @param endpoint    Endpoint overriding the one of the region, or empty.
+     */
+    public AcmClientFactory(AWSCredentialsProvider credentials, String endpoint) {
+        this.credentials = credentials;
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Return a client for the region passed as argument with the credentials configured.
+     *
+     * @param region         Region of the client.
+     * @param maxConnections Size of the connection pool of the client.
+     * @return ACM client.
+     */
+    public AWSCertificateManager create(Regions region, int maxConnections) {
+        return create(region, credentials, maxConnections);
+    }
+
+    /**
+     * Return a client for a target, assuming its role when it has any.
+     *
+     * @param target         Region and account of the client.
+     * @param maxConnections Size of the connection pool of the client.
+     * @return ACM client.
+     */
+    public AWSCertificateManager create(AcmTarget target, int maxConnections) {
+        if (target.getRoleArn() == null)
+            return create(target.getRegion(), maxConnections);
+        AWSSecurityTokenService stsClient = AWSSecurityTokenServiceClientBuilder.standard()
+                .withCredentials(credentials)
+                .withRegion(target.getRegion())
+                .build();
+        STSAssumeRoleSessionCredentialsProvider assumedRole = new STSAssumeRoleSessionCredentialsProvider.Builder(target.getRoleArn(), SESSION_NAME)
+                .withStsClient(stsClient)
+                .build();
+        AWSCertificateManager client = create(target.getRegion(), assumedRole, maxConnections);
+        assumedRoles.put(client, () -> {
+            assumedRole.close();
+            stsClient.shutdown();
+        });
+        return client;
+    }
+
+    /**
+     * Shut down a client, together with the credentials and the STS client of the role it assumed, if any.
+     *
+     * @param client ACM client created by this factory.
+     */
+    public void release(AWSCertificateManager client) {
+        client.shutdown();
+        Runnable assumedRole = assumedRoles.remove(client);
+        if (assumedRole != null)
+            assumedRole.run();
+    }
+
+    private AWSCertificateManager create(Regions region, AWSCredentialsProvider credentialsProvider, int maxConnections) {
+        AWSCertificateManagerClientBuilder builder = AWSCertificateManagerClientBuilder.standard()
+                .withCredentials(credentialsProvider)
+                .withClientConfiguration(new ClientConfiguration()
+                        .withMaxConnections(Math.max(1, maxConnections))
+                        .withRetryPolicy(PredefinedRetryPolicies.NO_RETRY_POLICY));
+        if (endpoint.isEmpty())
+            builder.withRegion(region);
+        else
+            builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(endpoint, region.getName()));
+        return builder.build();
+    }
+}
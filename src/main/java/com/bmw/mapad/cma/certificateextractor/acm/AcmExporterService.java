@@ -1,58 +1,238 @@
 package com.bmw.mapad.cma.certificateextractor.acm;
 
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.services.certificatemanager.AWSCertificateManager;
 import com.amazonaws.services.certificatemanager.model.*;
+import com.bmw.mapad.cma.certificateextractor.ExportWorkers;
 import com.bmw.mapad.cma.certificateextractor.ExtractorStrategy;
 import com.bmw.mapad.cma.entity.Cert;
 import com.bmw.mapad.cma.entity.CertX509;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 /**
- * Service to manage certificates interacting with Amazon Certificate Manager using AWS SDK.
+ * Service to manage certificates interacting with Amazon Certificate Manager using AWS SDK, from the region configured
+ * or from several targets (region and account). Requests are rate limited and retried with an exponential backoff.
  */
+@Slf4j
 @Service("acm")
 @RequiredArgsConstructor
 public class AcmExporterService implements ExtractorStrategy {
+    private static final int PAGE_SIZE = 100;
+    private static final Set<String> THROTTLING_ERRORS = Set.of("ThrottlingException", "Throttling",
+            "TooManyRequestsException", "RequestLimitExceeded");
+
+    @Value("${cma.extractor.aws.concurrency:4}")
+    int concurrency;
+    @Value("${cma.extractor.aws.rate:10}")
+    double rate;
+    @Value("${cma.extractor.aws.max-retries:5}")
+    int maxRetries;
+    @Value("${cma.extractor.aws.backoff:200}")
+    long backoff;
+    @Value("${cma.extractor.aws.target-concurrency:4}")
+    int targetConcurrency;
+    @Value("${cma.extractor.aws.targets:}")
+    String[] targets;
     final AWSCertificateManager acmClient;
+    final AcmClientFactory acmClientFactory;
 
     /**
-     * Export all certificates from amazon certificate manager in some specific region and account.
+     * Export all certificates from amazon certificate manager in the region configured, or in every target configured.
+     * Targets are handled concurrently by a bounded pool, each one with its own client, and the certificates are merged
+     * following the order of the targets. A target failing does not prevent the others from being exported.
      *
      * @return List of certs successfully exported.
      */
     @Override
     public List<Cert> exportAllCert() {
+        List<AcmTarget> acmTargets = AcmTarget.parseAll(targets);
+        if (acmTargets.isEmpty())
+            return exportCertFromClient(acmClient, null);
+
+        return ExportWorkers.exportAll(acmTargets, targetConcurrency, this::exportCertFromTarget);
+    }
+
+    /**
+     * Export all certificates of a target through a client of its own, released afterwards.
+     *
+     * @param target Region and account to be exported.
+     * @return List of certs successfully exported.
+     */
+    private List<Cert> exportCertFromTarget(AcmTarget target) {
+        AWSCertificateManager client = acmClientFactory.create(target, concurrency);
+        try {
+            List<Cert> certs = exportCertFromClient(client, target);
+            log.info("{} certificates exported from {}.", certs.size(), target);
+            return certs;
+        } finally {
+            acmClientFactory.release(client);
+        }
+    }
+
+    /**
+     * Export all certificates reachable by a client: every page is listed, then certificates are described by a
+     * bounded pool of threads, and merged following the order of the listing.
+     *
+     * @param client ACM client.
+     * @param target Region and account of the client, or null for the client of the region configured.
+     * @return List of certs successfully exported.
+     */
+    List<Cert> exportCertFromClient(AWSCertificateManager client, AcmTarget target) {
         List<Cert> listCert = new ArrayList<>();
+        TokenBucket tokenBucket = new TokenBucket(rate);
+        ExecutorService describePool = Executors.newFixedThreadPool(Math.max(1, concurrency));
+        try {
+            List<Future<CertificateDetail>> details = new ArrayList<>();
+            for (String arn : listCertificateArns(client, tokenBucket))
+                details.add(describePool.submit(() -> describeCertificate(client, arn, tokenBucket)));
+            for (Future<CertificateDetail> detail : details) {
+                try {
+                    listCert.add(toCert(detail.get(), target));
+                } catch (ExecutionException e) {
+                    log.error("Certificate could not be described: {}", e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Export of certificates from Certificate Manager has been interrupted.");
+        } finally {
+            describePool.shutdownNow();
+        }
+        return listCert;
+    }
+
+    /**
+     * Return the arn of every certificate, following the next token of each page until the last one.
+     *
+     * @param client      ACM client.
+     * @param tokenBucket Limiter of the request rate.
+     * @return List of certificate arns.
+     */
+    List<String> listCertificateArns(AWSCertificateManager client, TokenBucket tokenBucket) throws InterruptedException {
+        List<String> arns = new ArrayList<>();
         ListCertificatesRequest request = new ListCertificatesRequest();
         request.setCertificateStatuses(Arrays
                 .stream(CertificateStatus.values())
                 .map(CertificateStatus::toString)
                 .collect(Collectors.toList()));
-        request.setMaxItems(100);
-
-        ListCertificatesResult arnCertList = acmClient.listCertificates(request);
-
-        arnCertList.getCertificateSummaryList().forEach((item) -> {
-            DescribeCertificateRequest reqCert = new DescribeCertificateRequest();
-            reqCert.setCertificateArn(item.getCertificateArn());
-            CertificateDetail certInfo = acmClient.describeCertificate(reqCert).getCertificate();
-            listCert.add(CertX509.builder()
-                    .serialNumber(BigInteger.ONE)
-                    .alias(certInfo.getCertificateArn())
-                    .startAfter(certInfo.getNotBefore())
-                    .finishBefore(certInfo.getNotAfter())
-                    .project(certInfo.getDomainName())
-                    .source("Certificate Manager")
-                    .issueID("NO_ISSUE")
-                    .build());
-        });
-        return listCert;
+        request.setMaxItems(PAGE_SIZE);
+        String nextToken = null;
+        do {
+            request.setNextToken(nextToken);
+            ListCertificatesResult page = withRetries(tokenBucket, () -> client.listCertificates(request));
+            page.getCertificateSummaryList().forEach(summary -> arns.add(summary.getCertificateArn()));
+            nextToken = page.getNextToken();
+        } while (nextToken != null && !nextToken.isEmpty());
+        log.info("{} certificates found in Certificate Manager.", arns.size());
+        return arns;
+    }
+
+    /**
+     * Return the details of a certificate.
+     *
+     * @param client      ACM client.
+     * @param arn         Arn of the certificate.
+     * @param tokenBucket Limiter of the request rate.
+     * @return Details of the certificate.
+     */
+    private CertificateDetail describeCertificate(AWSCertificateManager client, String arn, TokenBucket tokenBucket) throws InterruptedException {
+        DescribeCertificateRequest reqCert = new DescribeCertificateRequest();
+        reqCert.setCertificateArn(arn);
+        return withRetries(tokenBucket, () -> client.describeCertificate(reqCert)).getCertificate();
+    }
+
+    /**
+     * Send a request once a token is available, retrying it while throttled or failing with a retryable error up to the
+     * maximum number of retries. The wait between retries grows exponentially, with jitter so throttled threads do not
+     * retry all at once.
+     *
+     * @param tokenBucket Limiter of the request rate.
+     * @param request     Request to be sent.
+     * @return The result of the request.
+     */
+    <T> T withRetries(TokenBucket tokenBucket, Callable<T> request) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            tokenBucket.acquire();
+            try {
+                return request.call();
+            } catch (AmazonClientException e) {
+                if (!isRetryable(e) || attempt >= maxRetries)
+                    throw e;
+                long wait = backoff * (1L << Math.min(attempt, 16));
+                log.debug("Request to Certificate Manager failed, retrying in {} ms. {}", wait, e.getMessage());
+                TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(wait / 2, wait + 1));
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Check if a request has been rejected by the throttling of the service.
+     */
+    private boolean isThrottling(AmazonServiceException e) {
+        return e.getStatusCode() == 429 || (e.getErrorCode() != null && THROTTLING_ERRORS.contains(e.getErrorCode()));
+    }
+
+    /**
+     * Check if a request can be retried, as the default retry policy of the SDK would: throttled, rejected by a server
+     * error, or failed by an IO error on the client side.
+     */
+    private boolean isRetryable(AmazonClientException e) {
+        if (!e.isRetryable())
+            return false;
+        if (e instanceof AmazonServiceException) {
+            AmazonServiceException serviceException = (AmazonServiceException) e;
+            return isThrottling(serviceException) || RetryUtils.isRetryableServiceException(serviceException);
+        }
+        return e.getCause() instanceof IOException;
+    }
+
+    /**
+     * Build the certificate exported from the details of an ACM certificate. Region and account are taken from the arn
+     * of the certificate (arn:aws:acm:region:account:certificate/id), or else from the target. The account is used as
+     * project, and the domain name is kept in the subject.
+     */
+    private Cert toCert(CertificateDetail certInfo, AcmTarget target) {
+        String[] arn = certInfo.getCertificateArn() == null ? new String[0] : certInfo.getCertificateArn().split(":", 6);
+        String region = arn.length == 6 ? arn[3] : target != null ? target.getRegion().getName() : null;
+        String account = arn.length == 6 ? arn[4] : target != null ? target.getAccount() : null;
+        String subject = certInfo.getSubject() != null ? certInfo.getSubject() : "CN=" + certInfo.getDomainName();
+        return CertX509.builder()
+                .serialNumber(certInfo.getSerial() != null ? parseSerial(certInfo.getSerial()) : BigInteger.ONE)
+                .alias(certInfo.getCertificateArn())
+                .startAfter(certInfo.getNotBefore())
+                .finishBefore(certInfo.getNotAfter())
+                .project(account != null ? account : "")
+                .source("Certificate Manager")
+                .issueID("NO_ISSUE")
+                .subject(subject)
+                .region(region)
+                .account(account)
+                .build();
+    }
+
+    /**
+     * Parse the serial number of an ACM certificate, written as colon separated hex bytes (i.e. 0a:1b:2c).
+     */
+    private BigInteger parseSerial(String serial) {
+        try {
+            return new BigInteger(serial.replace(":", ""), 16);
+        } catch (NumberFormatException e) {
+            return BigInteger.ONE;
+        }
     }
 }
@@ -0,0 +1,70 @@
+package com.bmw.mapad.cma.certificateextractor.acm;
+
+import com.amazonaws.regions.Regions;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Region and account whose certificates are extracted from Certificate Manager, written as {@code <region>} or {@code
+ * <region>:<role arn>} (i.e. EU_CENTRAL_1:arn:aws:iam::123456789012:role/cma-reader).
+ */
+@Getter
+public class AcmTarget {
+    private final Regions region;
+    private final String roleArn;
+    private final String account;
+
+    AcmTarget(Regions region, String roleArn) {
+        this.region = region;
+        this.roleArn = roleArn;
+        String[] arn = roleArn == null ? new String[0] : roleArn.split(":");
+        this.account = arn.length > 4 && !arn[4].isEmpty() ? arn[4] : null;
+    }
+
+    /**
+     * Parse a target.
+     *
+     * @param target Target as configured.
+     * @return The target.
+     * @throws IllegalArgumentException if the region is unknown.
+     */
+    public static AcmTarget parse(String target) {
+        String trimmed = target.trim();
+        int separator = trimmed.indexOf(':');
+        String region = separator == -1 ? trimmed : trimmed.substring(0, separator);
+        String roleArn = separator == -1 ? null : trimmed.substring(separator + 1).trim();
+        return new AcmTarget(parseRegion(region.trim()), roleArn == null || roleArn.isEmpty() ? null : roleArn);
+    }
+
+    /**
+     * Parse every target configured, skipping the blank ones.
+     *
+     * @param targets Targets as configured.
+     * @return The targets.
+     */
+    public static List<AcmTarget> parseAll(String[] targets) {
+        List<AcmTarget> result = new ArrayList<>();
+        if (targets != null) {
+            for (String target : targets) {
+                if (!target.isBlank())
+                    result.add(parse(target));
+            }
+        }
+        return result;
+    }
+
+    private static Regions parseRegion(String region) {
+        for (Regions candidate : Regions.values()) {
+            if (candidate.getName().equals(region))
+                return candidate;
+        }
+        return Regions.valueOf(region);
+    }
+
+    @Override
+    public String toString() {
+        return roleArn == null ? region.getName() : region.getName() + ":" + roleArn;
+    }
+}
@@ -5,7 +5,6 @@ import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.auth.profile.ProfileCredentialsProvider;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.certificatemanager.AWSCertificateManager;
-import com.amazonaws.services.certificatemanager.AWSCertificateManagerClientBuilder;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -23,18 +22,30 @@ public class AwsClientConfig {
     String accessKeyId;
     @Value(("${cma.extractor.aws.secretkey:secret}"))
     String secretAccessKey;
+    @Value("${cma.extractor.aws.endpoint:}")
+    String endpoint;
+    @Value("${cma.extractor.aws.concurrency:4}")
+    int maxConnections;
 
     /**
-     * Return a client to interact with certificate manager service provided by AWS SDK.
-     * @return ACM client.
+     * Return the factory of the clients of certificate manager, one per region and account, sharing the credentials
+     * configured. The endpoint can be overridden (i.e. a local ACM endpoint for testing), otherwise the one of each
+     * region is used.
+     * @return ACM client factory.
      */
     @Bean
-    public AWSCertificateManager AcmClient() {
+    public AcmClientFactory acmClientFactory() {
         //ProfileCredentialsProvider profilesCredentials = new ProfileCredentialsProvider(profile);
         AWSStaticCredentialsProvider awsCredentials = new AWSStaticCredentialsProvider(new BasicAWSCredentials(accessKeyId, secretAccessKey));
-        return AWSCertificateManagerClientBuilder.standard()
-                .withRegion(Regions.valueOf(region))
-                .withCredentials(awsCredentials)
-                .build();
+        return new AcmClientFactory(awsCredentials, endpoint);
+    }
+
+    /**
+     * Return a client to interact with certificate manager service provided by AWS SDK, for the region configured.
+     * @return ACM client.
+     */
+    @Bean
+    public AWSCertificateManager AcmClient(AcmClientFactory acmClientFactory) {
+        return acmClientFactory.create(Regions.valueOf(region), maxConnections);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,51 @@
+package com.bmw.mapad.cma.certificateextractor.acm;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting the rate of the requests sent to an AWS service. The bucket holds up to one second worth of
+ * tokens, refilled continuously, so short bursts are allowed while the average rate never exceeds the limit.
+ */
+public class TokenBucket {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double ratePerSecond;
+    private final double capacity;
+    private double tokens;
+    private long refilled;
+
+    /**
+     * @param ratePerSecond Maximum number of requests per second, or 0 for no limit.
+     */
+    public TokenBucket(double ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+        this.capacity = Math.max(1, ratePerSecond);
+        this.tokens = capacity;
+        this.refilled = System.nanoTime();
+    }
+
+    /**
+     * Take a token, waiting until one is available.
+     */
+    public void acquire() throws InterruptedException {
+        if (ratePerSecond <= 0)
+            return;
+        long wait;
+        synchronized (this) {
+            refill();
+            tokens -= 1;
+            wait = tokens >= 0 ? 0 : (long) (-tokens * NANOS_PER_SECOND / ratePerSecond);
+        }
+        if (wait > 0)
+            TimeUnit.NANOSECONDS.sleep(wait);
+    }
+
+    /**
+     * Add the tokens earned since the last refill, up to the capacity of the bucket.
+     */
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilled) * ratePerSecond / NANOS_PER_SECOND);
+        refilled = now;
+    }
+}
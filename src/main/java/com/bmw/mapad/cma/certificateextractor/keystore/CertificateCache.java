@@ -0,0 +1,79 @@
+package com.bmw.mapad.cma.certificateextractor.keystore;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory cache of the certificates summaries, keyed by the SHA-256 of their DER encoding, so a certificate found in
+ * several keystores is decoded once. The least recently used entries are evicted first.
+ */
+@Slf4j
+@Service
+public class CertificateCache {
+    @Value("${cma.extractor.certificates.cache-size:10000}")
+    int maxEntries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final Map<String, CertificateSummary> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CertificateSummary> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /**
+     * Return the summary of a DER encoded certificate, which is only decoded if not found in the cache.
+     *
+     * @param certificate Reader over the encoding of the certificate.
+     * @return The summary of the certificate.
+     */
+    public CertificateSummary get(DerReader certificate) throws IOException {
+        String fingerprint = CertificateSummary.fingerprint(certificate);
+        CertificateSummary summary = lookup(fingerprint);
+        return summary != null ? summary : put(fingerprint, CertificateSummary.parse(certificate, fingerprint));
+    }
+
+    /**
+     * Return the summary of a certificate already parsed by the JCA, shared with the previous copies of the same
+     * certificate.
+     *
+     * @param certificate Certificate.
+     * @return The summary of the certificate.
+     */
+    public CertificateSummary get(X509Certificate certificate) {
+        String fingerprint = CertificateSummary.fingerprint(certificate);
+        CertificateSummary summary = lookup(fingerprint);
+        return summary != null ? summary : put(fingerprint, CertificateSummary.of(certificate, fingerprint));
+    }
+
+    /**
+     * Log the number of hits and misses of the cache.
+     */
+    public void logStatistics() {
+        log.info("Certificate cache: {} hits, {} misses.", hits.get(), misses.get());
+    }
+
+    private synchronized CertificateSummary lookup(String fingerprint) {
+        CertificateSummary summary = fingerprint != null ? entries.get(fingerprint) : null;
+        (summary != null ? hits : misses).incrementAndGet();
+        return summary;
+    }
+
+    /**
+     * Store a summary unless another thread stored the same certificate meanwhile, in which case that one is shared.
+     */
+    private synchronized CertificateSummary put(String fingerprint, CertificateSummary summary) {
+        if (fingerprint == null)
+            return summary;
+        CertificateSummary previous = entries.putIfAbsent(fingerprint, summary);
+        return previous != null ? previous : summary;
+    }
+}
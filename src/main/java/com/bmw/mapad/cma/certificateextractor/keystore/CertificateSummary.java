@@ -0,0 +1,185 @@
+package com.bmw.mapad.cma.certificateextractor.keystore;
+
+import com.bmw.mapad.cma.entity.Cert;
+import com.bmw.mapad.cma.entity.CertX509;
+import lombok.Getter;
+
+import javax.security.auth.x500.X500Principal;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+/**
+ * The attributes of a X.509 certificate the application relies on: serial number, validity, subject and SHA-256
+ * fingerprint, pulled straight from its DER encoding.
+ */
+@Getter
+public class CertificateSummary {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final BigInteger serialNumber;
+    private final Date notBefore;
+    private final Date notAfter;
+    private final String subject;
+    private final String fingerprint;
+
+    private CertificateSummary(BigInteger serialNumber, Date notBefore, Date notAfter, String subject, String fingerprint) {
+        this.serialNumber = serialNumber;
+        this.notBefore = notBefore;
+        this.notAfter = notAfter;
+        this.subject = subject;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Read the summary of a DER encoded certificate.
+     *
+     * @param certificate Reader over the encoding of the certificate.
+     * @return The summary of the certificate.
+     */
+    public static CertificateSummary parse(DerReader certificate) throws IOException {
+        return parse(certificate, fingerprint(certificate));
+    }
+
+    /**
+     * Read the summary of a DER encoded certificate whose fingerprint is already known.
+     *
+     * @param certificate Reader over the encoding of the certificate.
+     * @param fingerprint Fingerprint of the certificate.
+     * @return The summary of the certificate.
+     */
+    public static CertificateSummary parse(DerReader certificate, String fingerprint) throws IOException {
+        DerReader tbsCertificate = certificate.readSequence().readSequence();
+        if (tbsCertificate.peekTag() == DerReader.CONTEXT_0)
+            tbsCertificate.skip();
+        BigInteger serialNumber = tbsCertificate.readInteger();
+        tbsCertificate.skip();
+        tbsCertificate.skip();
+        DerReader validity = tbsCertificate.readSequence();
+        Date notBefore = readTime(validity);
+        Date notAfter = readTime(validity);
+        String subject;
+        try {
+            subject = new X500Principal(tbsCertificate.readEncoded()).getName();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid certificate subject", e);
+        }
+        return new CertificateSummary(serialNumber, notBefore, notAfter, subject, fingerprint);
+    }
+
+    /**
+     * Return the summary of a certificate already parsed by the JCA.
+     *
+     * @param certificate Certificate.
+     * @return The summary of the certificate.
+     */
+    public static CertificateSummary of(X509Certificate certificate) {
+        return of(certificate, fingerprint(certificate));
+    }
+
+    /**
+     * Return the summary of a certificate already parsed by the JCA whose fingerprint is already known.
+     *
+     * @param certificate Certificate.
+     * @param fingerprint Fingerprint of the certificate.
+     * @return The summary of the certificate.
+     */
+    public static CertificateSummary of(X509Certificate certificate, String fingerprint) {
+        return new CertificateSummary(certificate.getSerialNumber(), certificate.getNotBefore(),
+                certificate.getNotAfter(), certificate.getSubjectX500Principal().getName(), fingerprint);
+    }
+
+    /**
+     * Build the certificate found in a keystore or a file.
+     *
+     * @param alias   Alias of the certificate.
+     * @param project Project which the source belongs to.
+     * @param source  Path of the keystore or the file.
+     * @return The certificate.
+     */
+    public Cert toCert(String alias, String project, String source) {
+        return CertX509.builder()
+                .serialNumber(serialNumber)
+                .alias(alias)
+                .startAfter(notBefore)
+                .finishBefore(notAfter)
+                .project(project)
+                .source(source)
+                .issueID("NO_ISSUE")
+                .subject(subject)
+                .fingerprint(fingerprint)
+                .build();
+    }
+
+    /**
+     * Return the SHA-256 fingerprint, in hexadecimal, of the encoding of a certificate.
+     *
+     * @param certificate Certificate.
+     * @return The fingerprint or null if the certificate cannot be encoded.
+     */
+    public static String fingerprint(X509Certificate certificate) {
+        try {
+            return fingerprint(new DerReader(certificate.getEncoded()));
+        } catch (CertificateEncodingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Return the SHA-256 fingerprint, in hexadecimal, of the encoding left to be read by the reader.
+     *
+     * @param certificate Reader over the encoding of the certificate.
+     * @return The fingerprint.
+     */
+    public static String fingerprint(DerReader certificate) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            certificate.update(sha256);
+            byte[] digest = sha256.digest();
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = HEX[(digest[i] >> 4) & 0xf];
+                hex[2 * i + 1] = HEX[digest[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read a UTCTime (two digits year, 1950 to 2049) or a GeneralizedTime, both in UTC. Fractions of second are
+     * ignored.
+     */
+    private static Date readTime(DerReader validity) throws IOException {
+        int tag = validity.peekTag();
+        if (tag != DerReader.UTC_TIME && tag != DerReader.GENERALIZED_TIME)
+            throw new IOException("Unexpected time in certificate validity");
+        String time = new String(validity.read(tag).remaining(), StandardCharsets.US_ASCII);
+        int offset = tag == DerReader.UTC_TIME ? 2 : 4;
+        if (time.length() < offset + 10 || !time.endsWith("Z"))
+            throw new IOException("Unsupported time in certificate validity: " + time);
+        try {
+            int year = Integer.parseInt(time.substring(0, offset));
+            if (tag == DerReader.UTC_TIME)
+                year += year < 50 ? 2000 : 1900;
+            LocalDateTime dateTime = LocalDateTime.of(year,
+                    Integer.parseInt(time.substring(offset, offset + 2)),
+                    Integer.parseInt(time.substring(offset + 2, offset + 4)),
+                    Integer.parseInt(time.substring(offset + 4, offset + 6)),
+                    Integer.parseInt(time.substring(offset + 6, offset + 8)),
+                    Character.isDigit(time.charAt(offset + 8)) ? Integer.parseInt(time.substring(offset + 8, offset + 10)) : 0);
+            return Date.from(dateTime.toInstant(ZoneOffset.UTC));
+        } catch (NumberFormatException | DateTimeException e) {
+            throw new IOException("Invalid time in certificate validity: " + time, e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.bmw.mapad.cma.certificateextractor.keystore;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Minimal reader of DER encoded ASN.1 structures, enough to walk the envelope of a keystore without parsing its
+ * entries. Only definite lengths are supported.
+ */
+public class DerReader {
+    public static final int SEQUENCE = 0x30;
+    public static final int INTEGER = 0x02;
+    public static final int OCTET_STRING = 0x04;
+    public static final int OBJECT_IDENTIFIER = 0x06;
+    public static final int BMP_STRING = 0x1e;
+    public static final int UTC_TIME = 0x17;
+    public static final int GENERALIZED_TIME = 0x18;
+    public static final int SET = 0x31;
+    public static final int CONTEXT_0 = 0xa0;
+
+    private final byte[] data;
+    private final int end;
+    private int position;
+
+    public DerReader(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    public DerReader(byte[] data, int offset, int length) {
+        this.data = data;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    /**
+     * Check if there are elements left to be read.
+     */
+    public boolean hasMore() {
+        return position < end;
+    }
+
+    /**
+     * Return the tag of the next element without consuming it.
+     */
+    public int peekTag() throws IOException {
+        if (!hasMore())
+            throw new IOException("Unexpected end of DER structure");
+        return data[position] & 0xff;
+    }
+
+    /**
+     * Read the next element, which must have the tag passed as argument, and return a reader over its content.
+     *
+     * @param tag Expected tag.
+     * @return Reader over the content of the element.
+     */
+    public DerReader read(int tag) throws IOException {
+        int length = readHeader(tag);
+        DerReader content = new DerReader(data, position, length);
+        position += length;
+        return content;
+    }
+
+    /**
+     * Read a sequence and return a reader over its elements.
+     */
+    public DerReader readSequence() throws IOException {
+        return read(SEQUENCE);
+    }
+
+    /**
+     * Read an octet string and return its bytes.
+     */
+    public byte[] readOctetString() throws IOException {
+        return read(OCTET_STRING).remaining();
+    }
+
+    /**
+     * Read an integer.
+     */
+    public BigInteger readInteger() throws IOException {
+        return new BigInteger(read(INTEGER).remaining());
+    }
+
+    /**
+     * Read an object identifier in its dotted form (i.e. 1.3.14.3.2.26).
+     */
+    public String readOid() throws IOException {
+        byte[] oid = read(OBJECT_IDENTIFIER).remaining();
+        if (oid.length == 0)
+            throw new IOException("Empty object identifier");
+        StringBuilder dotted = new StringBuilder();
+        long value = 0;
+        boolean first = true;
+        for (byte b : oid) {
+            value = (value << 7) | (b & 0x7f);
+            if ((b & 0x80) == 0) {
+                if (first) {
+                    int root = (int) Math.min(value / 40, 2);
+                    dotted.append(root).append('.').append(value - 40L * root);
+                    first = false;
+                } else {
+                    dotted.append('.').append(value);
+                }
+                value = 0;
+            }
+        }
+        return dotted.toString();
+    }
+
+    /**
+     * Skip the next element whatever its tag.
+     */
+    public void skip() throws IOException {
+        int length = readHeader(peekTag());
+        position += length;
+    }
+
+    /**
+     * Read the next element whatever its tag and return its whole encoding, tag and length included.
+     */
+    public byte[] readEncoded() throws IOException {
+        int start = position;
+        skip();
+        return Arrays.copyOfRange(data, start, position);
+    }
+
+    /**
+     * Return the bytes left to be read by this reader.
+     */
+    public byte[] remaining() {
+        return Arrays.copyOfRange(data, position, end);
+    }
+
+    /**
+     * Feed a digest with the bytes left to be read by this reader, without copying them.
+     */
+    public void update(MessageDigest digest) {
+        digest.update(data, position, end - position);
+    }
+
+    /**
+     * Consume the tag and the length of the next element, leaving the position at the start of its content.
+     *
+     * @param tag Expected tag.
+     * @return Length of the content.
+     */
+    private int readHeader(int tag) throws IOException {
+        if (peekTag() != tag)
+            throw new IOException(String.format("Unexpected DER tag 0x%02x, expected 0x%02x", peekTag(), tag));
+        position++;
+        if (!hasMore())
+            throw new IOException("Unexpected end of DER structure");
+        int first = data[position++] & 0xff;
+        int length;
+        if (first < 0x80) {
+            length = first;
+        } else {
+            int octets = first & 0x7f;
+            if (octets == 0 || octets > 4)
+                throw new IOException("Unsupported DER length");
+            length = 0;
+            for (int i = 0; i < octets; i++) {
+                if (!hasMore())
+                    throw new IOException("Unexpected end of DER structure");
+                length = (length << 8) | (data[position++] & 0xff);
+            }
+        }
+        if (length < 0 || length > end - position)
+            throw new IOException("DER length exceeds the structure");
+        return length;
+    }
+}
@@ -0,0 +1,198 @@
+package com.bmw.mapad.cma.certificateextractor.keystore;
+
+import com.bmw.mapad.cma.entity.Cert;
+import com.bmw.mapad.cma.entity.CertX509;
+import com.bmw.mapad.cma.entity.KeystoreFile;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Cache persisted across runs holding the certificates extracted from each keystore, keyed by the git blob id of its
+ * content, so unchanged keystores are not unlocked again.
+ */
+@Slf4j
+@Service
+public class ExtractionCache {
+    private static final Type ENTRIES_TYPE = new TypeToken<LinkedHashMap<String, List<CachedCert>>>() {}.getType();
+
+    @Value("${cma.extractor.keystore.cache.file:extraction-cache.json}")
+    String cacheFile;
+    @Value("${cma.extractor.keystore.cache.size:10000}")
+    int maxEntries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private LruEntries entries;
+
+    /**
+     * Return the git blob id of a content, which is the same id used by git to store the file.
+     *
+     * @param content Content of the file.
+     * @return Blob id.
+     */
+    public String getBlobId(byte[] content) {
+        try (ObjectInserter.Formatter formatter = new ObjectInserter.Formatter()) {
+            return formatter.idFor(Constants.OBJ_BLOB, content).name();
+        }
+    }
+
+    /**
+     * Return the git blob id of a file, hashing its content as it is read instead of holding it in memory.
+     *
+     * @param pathFile Path of the file.
+     * @return Blob id.
+     */
+    public String getBlobId(Path pathFile) throws IOException {
+        try (ObjectInserter.Formatter formatter = new ObjectInserter.Formatter();
+             InputStream input = Files.newInputStream(pathFile)) {
+            return formatter.idFor(Constants.OBJ_BLOB, Files.size(pathFile), input).name();
+        }
+    }
+
+    /**
+     * Return the certificates previously extracted from a keystore with the same content.
+     *
+     * @param keystoreFile Keystore file holding its blob id.
+     * @return The certificates if the keystore has been extracted before.
+     */
+    public synchronized Optional<List<Cert>> get(KeystoreFile keystoreFile) {
+        List<CachedCert> cachedCerts = getEntries().get(keystoreFile.getBlobId());
+        if (cachedCerts == null) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        hits.incrementAndGet();
+        return Optional.of(cachedCerts.stream()
+                .map(cert -> cert.toCert(keystoreFile))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Check if the certificates of a content have been extracted before, without counting it as a hit or a miss.
+     *
+     * @param blobId Blob id of the keystore content.
+     * @return true if the content is cached otherwise false.
+     */
+    public synchronized boolean contains(String blobId) {
+        return blobId != null && getEntries().containsKey(blobId);
+    }
+
+    /**
+     * Store the certificates extracted from a keystore.
+     *
+     * @param blobId Blob id of the keystore content.
+     * @param certs  Certificates extracted.
+     */
+    public synchronized void put(String blobId, List<Cert> certs) {
+        getEntries().put(blobId, certs.stream()
+                .map(CachedCert::new)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Write the cache to disk so it can be used by the next run.
+     */
+    public synchronized void save() {
+        log.info("Extraction cache: {} hits, {} misses.", hits.get(), misses.get());
+        try (Writer writer = Files.newBufferedWriter(Paths.get(cacheFile))) {
+            new Gson().toJson(getEntries(), ENTRIES_TYPE, writer);
+        } catch (IOException e) {
+            log.error("An error occurred saving the extraction cache {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Return the cache entries, loading them from disk on first use.
+     *
+     * @return Entries ordered from the least to the most recently used.
+     */
+    private Map<String, List<CachedCert>> getEntries() {
+        if (entries == null) {
+            entries = new LruEntries(maxEntries);
+            Path path = Paths.get(cacheFile);
+            if (Files.exists(path)) {
+                try (Reader reader = Files.newBufferedReader(path)) {
+                    Map<String, List<CachedCert>> stored = new Gson().fromJson(reader, ENTRIES_TYPE);
+                    if (stored != null)
+                        entries.putAll(stored);
+                } catch (IOException | JsonParseException e) {
+                    log.warn("Extraction cache could not be loaded, starting empty. {}", e.getMessage());
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Cache entries in access order, evicting the least recently used one once the maximum size is exceeded.
+     */
+    static class LruEntries extends LinkedHashMap<String, List<CachedCert>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        LruEntries(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<CachedCert>> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    /**
+     * Attributes of a certificate that depend only on the keystore content.
+     */
+    static class CachedCert {
+        String alias;
+        BigInteger serialNumber;
+        long startAfter;
+        long finishBefore;
+        String subject;
+        String fingerprint;
+
+        CachedCert(Cert cert) {
+            alias = cert.getAlias();
+            serialNumber = ((CertX509) cert).getSerialNumber();
+            startAfter = cert.getStartAfter().getTime();
+            finishBefore = cert.getFinishBefore().getTime();
+            subject = ((CertX509) cert).getSubject();
+            fingerprint = ((CertX509) cert).getFingerprint();
+        }
+
+        Cert toCert(KeystoreFile keystoreFile) {
+            return CertX509.builder()
+                    .serialNumber(serialNumber)
+                    .alias(alias)
+                    .startAfter(new Date(startAfter))
+                    .finishBefore(new Date(finishBefore))
+                    .project(keystoreFile.getProject())
+                    .source(keystoreFile.getPathFile())
+                    .issueID("NO_ISSUE")
+                    .subject(subject)
+                    .fingerprint(fingerprint)
+                    .build();
+        }
+    }
+}
@@ -1,27 +1,37 @@
 package com.bmw.mapad.cma.certificateextractor.keystore;
 
+import com.bmw.mapad.cma.certificateextractor.ExportWorkers;
 import com.bmw.mapad.cma.certificateextractor.ExtractorStrategy;
 import com.bmw.mapad.cma.crawler.FilesImporter;
-import com.bmw.mapad.cma.entity.CertX509;
+import com.bmw.mapad.cma.crawler.KeystoreTypeDetector;
 import com.bmw.mapad.cma.entity.Cert;
+import com.bmw.mapad.cma.entity.KeystoreFile;
+import com.bmw.mapad.cma.entity.KeystoreStatus;
+import com.bmw.mapad.cma.entity.KeystoreType;
+import com.bmw.mapad.cma.credentialsmanagement.Credential;
+import com.bmw.mapad.cma.credentialsmanagement.CredentialMapping;
 import com.bmw.mapad.cma.credentialsmanagement.CredentialsManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import com.bmw.mapad.cma.utils.Utils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.io.FileInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.security.UnrecoverableKeyException;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Service to open a keystore file (ex: .kdbx) extracting certificates stored.
@@ -31,11 +41,26 @@ import java.util.*;
 @RequiredArgsConstructor
 @Service("jks")
 public class KeystoreExporterService implements ExtractorStrategy {
-    @Value("${cma.crawler.bitbucket.repositories}")
-    String[] repositoriesList;
+    @Value("${cma.crawler.bitbucket.workers:4}")
+    int workers;
+    @Value("${cma.extractor.keystore.parsing-threads:0}")
+    int parsingThreads;
+    @Value("${cma.extractor.keystore.file-timeout:60}")
+    long fileTimeout;
+    @Value("${cma.extractor.keystore.repository-timeout:1800}")
+    long repositoryTimeout;
+    @Value("${cma.extractor.keystore.extensions:jks,jceks,keystore,p12,pfx,ts,truststore}")
+    String[] extensions;
     final FilesImporter bitbucketHandler;
     private final CredentialsManager credentialsDB;
-    final Utils utils;
+    final ExtractionCache extractionCache;
+    final KeystoreTypeDetector keystoreTypeDetector;
+    final PasswordVerifier passwordVerifier;
+    final CredentialMapping credentialMapping;
+    final TrustedCertificateReader trustedCertificateReader;
+    final CertificateCache certificateCache;
+
+    private final Map<String, List<Credential>> resolvedCredentials = new ConcurrentHashMap<>();
 
     /**
      * Returns a KeyStore file which contains a set of digital certificates.
@@ -44,28 +69,136 @@ public class KeystoreExporterService implements ExtractorStrategy {
      * @param pathFile Path of target keystore file.
      */
     public Optional<KeyStore> loadFile(String pathFile, String project) throws KeyStoreException, CertificateException, IOException, NoSuchAlgorithmException {
-        List<String> passwordList = credentialsDB.findPassword(pathFile, project);
-        Optional<KeyStore> keystore = Optional.of(KeyStore.getInstance(KeyStore.getDefaultType()));
-        for (String password : passwordList) {
-            File keyFile = new File(pathFile);
-            try (InputStream inputStream = new FileInputStream(keyFile)) {
-                keystore.get().load(inputStream, password.toCharArray());
-                log.info("{} Unlocked successfully.",pathFile);
-                return keystore;
-            } catch (IOException | CertificateException | NoSuchAlgorithmException e) {
-                //Not logging intentionally to avoid throw a bunch of logs resulting of the process to find out the correct password
-                //If not found the matching password incident will be reported later
+        return loadKeystore(new KeystoreFile(pathFile, project));
+    }
+
+    /**
+     * Returns a KeyStore which contains a set of digital certificates from the content of a keystore file. The entry
+     * which unlocked it last time is tried first, then the candidates passing the integrity check, followed by a null
+     * password.
+     *
+     * @param keystoreFile Keystore file to be loaded.
+     */
+    Optional<KeyStore> loadKeystore(KeystoreFile keystoreFile) throws KeyStoreException {
+        List<Credential> obtained = new ArrayList<>();
+        try {
+            return loadKeystore(keystoreFile, obtained);
+        } finally {
+            obtained.forEach(Credential::wipe);
+        }
+    }
+
+    /**
+     * Same as {@link #loadKeystore(KeystoreFile)}, collecting the credentials obtained from the credentials manager.
+     */
+    private Optional<KeyStore> loadKeystore(KeystoreFile keystoreFile, List<Credential> obtained) throws KeyStoreException {
+        String pathFile = keystoreFile.getPathFile();
+        Optional<Credential> remembered = credentialMapping.lookup(keystoreFile).flatMap(credentialsDB::getCredential);
+        remembered.ifPresent(obtained::add);
+        List<Credential> resolved = resolvedCredentials.remove(pathFile);
+        if (resolved != null)
+            obtained.addAll(resolved);
+        List<Credential> candidates = remembered.isPresent() ? List.of(remembered.get())
+                : resolved != null ? resolved : discoverCredentials(keystoreFile, obtained);
+
+        byte[] content = keystoreFile.getContent();
+        try {
+            if (content == null)
+                content = Files.readAllBytes(Paths.get(pathFile));
+        } catch (IOException e) {
+            log.error("Keystore {} could not be read: {}", pathFile, e.getMessage());
+            keystoreFile.setStatus(KeystoreStatus.UNREADABLE);
+            return Optional.empty();
+        }
+        if (!keystoreFile.getType().isKeystore())
+            keystoreFile.setType(keystoreTypeDetector.detect(content));
+        if (!keystoreFile.getType().isKeystore()) {
+            keystoreFile.setStatus(KeystoreStatus.UNPARSEABLE);
+            return Optional.empty();
+        }
+
+        KeyStore keystore = KeyStore.getInstance(keystoreFile.getType().name());
+        if (unlock(keystoreFile, keystore, content, candidates))
+            return Optional.of(keystore);
+        if (remembered.isPresent() && !isGivenUp(keystoreFile)) {
+            log.debug("Remembered credential does not unlock {} any more.", pathFile);
+            candidates = resolved != null ? resolved : discoverCredentials(keystoreFile, obtained);
+            if (unlock(keystoreFile, keystore, content, candidates))
+                return Optional.of(keystore);
+        }
+        if (!isGivenUp(keystoreFile) && load(keystoreFile, keystore, content, null))
+            return Optional.of(keystore);
+        if (!isGivenUp(keystoreFile))
+            keystoreFile.setStatus(KeystoreStatus.NO_PASSWORD);
+        return Optional.empty();
+    }
+
+    /**
+     * Look for the candidate credentials of a keystore in the credentials manager.
+     */
+    private List<Credential> discoverCredentials(KeystoreFile keystoreFile, List<Credential> obtained) {
+        List<Credential> candidates = credentialsDB.findCredentials(keystoreFile.getPathFile(), keystoreFile.getProject());
+        obtained.addAll(candidates);
+        return candidates;
+    }
+
+    /**
+     * Check if the trials to unlock a keystore should stop: its content is not parseable or its time budget is over.
+     */
+    private boolean isGivenUp(KeystoreFile keystoreFile) {
+        return keystoreFile.getStatus() == KeystoreStatus.UNPARSEABLE || keystoreFile.getStatus() == KeystoreStatus.TIMED_OUT;
+    }
+
+    /**
+     * Try the candidate credentials passing the integrity check of the keystore, and remember the entry which unlocks
+     * it.
+     *
+     * @return true if the keystore has been unlocked otherwise false.
+     */
+    private boolean unlock(KeystoreFile keystoreFile, KeyStore keystore, byte[] content, List<Credential> candidates) {
+        List<Credential> credentials = passwordVerifier.filterCandidates(keystoreFile.getType(), content, candidates,
+                Credential::getPassword);
+        for (Credential credential : credentials) {
+            if (load(keystoreFile, keystore, content, credential.getPassword())) {
+                credentialMapping.remember(keystoreFile, credential.getEntry());
+                return true;
             }
+            if (isGivenUp(keystoreFile))
+                return false;
         }
+        return false;
+    }
 
-        File keyFile = new File(pathFile);
-        try (InputStream inputStream = new FileInputStream(keyFile)) {
-            keystore.get().load(inputStream, null);
+    /**
+     * Load the keystore with a single password. The status is set to UNLOCKED on success, or to UNPARSEABLE if the
+     * content could not be parsed regardless of the password. Nothing is tried once the time budget of the keystore is
+     * over (the thread has been interrupted), and the status is set to TIMED_OUT.
+     *
+     * @return true if the keystore has been unlocked otherwise false.
+     */
+    private boolean load(KeystoreFile keystoreFile, KeyStore keystore, byte[] content, char[] password) {
+        String pathFile = keystoreFile.getPathFile();
+        if (Thread.currentThread().isInterrupted()) {
+            keystoreFile.setStatus(KeystoreStatus.TIMED_OUT);
+            return false;
+        }
+        try (InputStream inputStream = new ByteArrayInputStream(content)) {
+            keystore.load(inputStream, password);
             log.info("{} Unlocked successfully.",pathFile);
-            return keystore;
-        } catch (IOException | CertificateException | NoSuchAlgorithmException e) {
-            return Optional.empty();
+            keystoreFile.setStatus(KeystoreStatus.UNLOCKED);
+            return true;
+        } catch (IOException e) {
+            //Not logging intentionally to avoid throw a bunch of logs resulting of the process to find out the correct password
+            //If not found the matching password incident will be reported later
+            if (!(e.getCause() instanceof UnrecoverableKeyException)) {
+                log.debug("Keystore {} could not be parsed as {}: {}", pathFile, keystoreFile.getType(), e.getMessage());
+                keystoreFile.setStatus(KeystoreStatus.UNPARSEABLE);
+            }
+        } catch (CertificateException | NoSuchAlgorithmException e) {
+            log.debug("Keystore {} could not be parsed as {}: {}", pathFile, keystoreFile.getType(), e.getMessage());
+            keystoreFile.setStatus(KeystoreStatus.UNPARSEABLE);
         }
+        return false;
     }
 
     /**
@@ -75,9 +208,32 @@ public class KeystoreExporterService implements ExtractorStrategy {
      * @return The set of certificates stored in this key store file.
      */
     public List<Cert> exportCertfromFile(String pathFile, String project) {
+        return exportCertfromKeystore(new KeystoreFile(pathFile, project));
+    }
+
+    /**
+     * Returns all certificates stored in this keystore file. Truststores holding only trusted certificates are read
+     * by the lightweight reader, which needs no password, and any other keystore is unlocked and loaded through the
+     * JCA. The content held in memory is used when available, otherwise it is read from the path file once.
+     *
+     * @param keystoreFile Keystore file to be opened.
+     * @return The set of certificates stored in this key store file.
+     */
+    public List<Cert> exportCertfromKeystore(KeystoreFile keystoreFile) {
         List<Cert> storedCertificates = new ArrayList<>();
+        String pathFile = keystoreFile.getPathFile();
+        String project = keystoreFile.getProject();
+        boolean contentHeld = keystoreFile.getContent() != null;
         try {
-            Optional<KeyStore> keystore = loadFile(pathFile, project);
+            Optional<Map<String, CertificateSummary>> trustedCertificates = readTrustedCertificates(keystoreFile);
+            if (trustedCertificates.isPresent()) {
+                trustedCertificates.get().forEach((alias, summary) -> storedCertificates.add(summary.toCert(alias, project, pathFile)));
+                log.info("{} Read as truststore.", pathFile);
+                keystoreFile.setStatus(KeystoreStatus.UNLOCKED);
+                return storedCertificates;
+            }
+
+            Optional<KeyStore> keystore = loadKeystore(keystoreFile);
             if (keystore.isPresent()) {
                 Enumeration<String> enumeration = keystore.get().aliases();
                 while (enumeration.hasMoreElements()) {
@@ -85,46 +241,271 @@ public class KeystoreExporterService implements ExtractorStrategy {
                     Certificate certificate = keystore.get().getCertificate(alias);
                     if (certificate!= null && "X.509".equals(certificate.getType())) {
                         X509Certificate currentCert = (X509Certificate) certificate;
-                        Cert loadedCertificate = CertX509.builder()
-                                .serialNumber(currentCert.getSerialNumber())
-                                .alias(alias)
-                                .startAfter(currentCert.getNotBefore())
-                                .finishBefore(currentCert.getNotAfter())
-                                .project(project)
-                                .source(pathFile)
-                                .issueID("NO_ISSUE")
-                                .build();
-                        storedCertificates.add(loadedCertificate);
+                        storedCertificates.add(certificateCache.get(currentCert).toCert(alias, project, pathFile));
                     }else{
                         log.info("Certificate {} is null: {}",pathFile, enumeration);
                     }
                 }
-            }else{
+            }else if (keystoreFile.getStatus() == KeystoreStatus.UNPARSEABLE){
+                log.error("Keystore could not be parsed: {}", pathFile);
+            }else if (keystoreFile.getStatus() == KeystoreStatus.NO_PASSWORD){
                 log.error("Any password found for keystore: {}", pathFile);
+            }else if (keystoreFile.getStatus() == KeystoreStatus.TIMED_OUT){
+                log.error("Keystore exceeded its time budget: {}", pathFile);
             }
-        } catch (KeyStoreException | CertificateException | IOException | NoSuchAlgorithmException e) {
+        } catch (KeyStoreException e) {
             log.error(e.getMessage());
+        } finally {
+            if (!contentHeld)
+                keystoreFile.setContent(null);
         }
 
         return storedCertificates;
     }
 
     /**
-     * Export all certificates from keystore files.
+     * Read the keystore as a truststore with the lightweight reader. The content read from the path file is kept in
+     * the keystore file, so it is not read again if the keystore has to be loaded through the JCA.
+     *
+     * @param keystoreFile Keystore file to be read.
+     * @return The summary of the certificates by alias, or empty if the keystore is not a truststore.
+     */
+    private Optional<Map<String, CertificateSummary>> readTrustedCertificates(KeystoreFile keystoreFile) {
+        if (keystoreFile.getContent() == null) {
+            try {
+                keystoreFile.setContent(Files.readAllBytes(Paths.get(keystoreFile.getPathFile())));
+            } catch (IOException e) {
+                //Reported when loading the keystore
+                return Optional.empty();
+            }
+        }
+        byte[] content = keystoreFile.getContent();
+        KeystoreType type = keystoreFile.getType().isKeystore() ? keystoreFile.getType() : keystoreTypeDetector.detect(content);
+        return trustedCertificateReader.read(type, content);
+    }
+
+    /**
+     * Returns all certificates stored in this keystore file. If a keystore with the same content has been extracted
+     * before, its certificates are taken from the extraction cache and the keystore is not opened at all. When the
+     * blob id is already known the keystore is not even read.
+     *
+     * @param keystoreFile Keystore file to be opened.
+     * @return The set of certificates stored in this key store file.
+     */
+    List<Cert> exportCertfromKeystoreCached(KeystoreFile keystoreFile) {
+        if (!assignBlobId(keystoreFile))
+            return new ArrayList<>();
+
+        Optional<List<Cert>> cachedCerts = extractionCache.get(keystoreFile);
+        if (cachedCerts.isPresent())
+            return cachedCerts.get();
+
+        List<Cert> certs = exportCertfromKeystore(keystoreFile);
+        if (!certs.isEmpty())
+            extractionCache.put(keystoreFile.getBlobId(), certs);
+        return certs;
+    }
+
+    /**
+     * Assign the blob id of a keystore file unless already known. Keystores not held in memory are hashed from the
+     * path file as it is read, so their content is not kept.
+     *
+     * @param keystoreFile Keystore file.
+     * @return Whether the blob id is known.
+     */
+    private boolean assignBlobId(KeystoreFile keystoreFile) {
+        if (keystoreFile.getBlobId() != null)
+            return true;
+        try {
+            keystoreFile.setBlobId(keystoreFile.getContent() != null ? extractionCache.getBlobId(keystoreFile.getContent())
+                    : extractionCache.getBlobId(Paths.get(keystoreFile.getPathFile())));
+            return true;
+        } catch (IOException e) {
+            log.error("Keystore {} could not be read: {}", keystoreFile.getPathFile(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Export all certificates from the keystore files found in a single repository, parsed concurrently each one within
+     * its own time budget. The local copy of the repository is released afterwards.
+     *
+     * @param repository  Repository to be fetched.
+     * @param parsingPool Pool of threads parsing the keystores.
+     * @param watchdog    Scheduler cancelling the keystores exceeding their time budget.
+     * @return List of certificates.
+     */
+    List<Cert> exportCertFromRepository(String repository, ExecutorService parsingPool, ScheduledExecutorService watchdog) {
+        long deadline = repositoryTimeout > 0 ? System.nanoTime() + TimeUnit.SECONDS.toNanos(repositoryTimeout) : Long.MAX_VALUE;
+        List<Cert> repositoryCerts = new ArrayList<>();
+        List<KeystoreFile> keystores = new ArrayList<>();
+        List<Future<List<Cert>>> results = new ArrayList<>();
+        try {
+            for (KeystoreFile keystore : bitbucketHandler.collectKeystores(repository, Arrays.asList(extensions))) {
+                if (keystore.getType().isKeystore())
+                    keystores.add(keystore);
+            }
+            resolveCredentials(keystores);
+            for (KeystoreFile keystore : keystores)
+                results.add(submitWithBudget(parsingPool, watchdog, () -> exportCertfromKeystoreCached(keystore)));
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    repositoryCerts.addAll(deadline == Long.MAX_VALUE ? results.get(i).get()
+                            : results.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                } catch (ExecutionException e) {
+                    log.error("An error occurred exporting certificates from {}: {}", repository, e.getCause().getMessage());
+                } catch (CancellationException e) {
+                    keystores.get(i).setStatus(KeystoreStatus.TIMED_OUT);
+                    log.error("Keystore exceeded its time budget: {}", keystores.get(i).getPathFile());
+                } catch (TimeoutException e) {
+                    int cancelled = cancel(keystores, results, i);
+                    log.error("Repository {} exceeded its time budget, {} keystores cancelled.", repository, cancelled);
+                    repositoryCerts.addAll(harvest(repository, results, i));
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(keystores, results, 0);
+            log.error("Export of certificates from {} has been interrupted.", repository);
+        } finally {
+            keystores.forEach(keystore -> Optional.ofNullable(resolvedCredentials.remove(keystore.getPathFile()))
+                    .ifPresent(credentials -> credentials.forEach(Credential::wipe)));
+            bitbucketHandler.release(repository);
+        }
+        return repositoryCerts;
+    }
+
+    /**
+     * Resolve the candidate credentials of the keystores of a repository in a single batch. Keystores extracted
+     * before, holding a remembered credential or readable without password are left out.
+     *
+     * @param keystores Keystore files of the repository.
+     */
+    private void resolveCredentials(List<KeystoreFile> keystores) {
+        Map<String, List<String>> pending = new LinkedHashMap<>();
+        for (KeystoreFile keystore : keystores) {
+            if (assignBlobId(keystore) && !extractionCache.contains(keystore.getBlobId())
+                    && credentialMapping.lookup(keystore).isEmpty() && !isTruststore(keystore))
+                pending.computeIfAbsent(keystore.getProject(), project -> new ArrayList<>()).add(keystore.getPathFile());
+        }
+        pending.forEach((project, pathFiles) -> resolvedCredentials.putAll(credentialsDB.resolveCredentials(pathFiles, project)));
+    }
+
+    /**
+     * Check if a keystore can be read by the lightweight reader, without password. The content read from the path
+     * file is not kept.
+     */
+    private boolean isTruststore(KeystoreFile keystoreFile) {
+        boolean contentHeld = keystoreFile.getContent() != null;
+        try {
+            return readTrustedCertificates(keystoreFile).isPresent();
+        } finally {
+            if (!contentHeld)
+                keystoreFile.setContent(null);
+        }
+    }
+
+    /**
+     * Cancel the keystores still pending from the index passed as argument, reporting them as timed out.
+     *
+     * @return Number of keystores actually cancelled, leaving out the ones already finished.
+     */
+    private int cancel(List<KeystoreFile> keystores, List<Future<List<Cert>>> results, int from) {
+        int cancelled = 0;
+        for (int i = from; i < results.size(); i++) {
+            if (results.get(i).cancel(true)) {
+                keystores.get(i).setStatus(KeystoreStatus.TIMED_OUT);
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Collect the certificates of the keystores from the index passed as argument which finished before being
+     * cancelled, following the order of the keystores.
+     */
+    private List<Cert> harvest(String repository, List<Future<List<Cert>>> results, int from) throws InterruptedException {
+        List<Cert> certs = new ArrayList<>();
+        for (int i = from; i < results.size(); i++) {
+            Future<List<Cert>> result = results.get(i);
+            if (!result.isDone() || result.isCancelled())
+                continue;
+            try {
+                certs.addAll(result.get());
+            } catch (ExecutionException e) {
+                log.error("An error occurred exporting certificates from {}: {}", repository, e.getCause().getMessage());
+            }
+        }
+        return certs;
+    }
+
+    /**
+     * Submit a task to a pool, cancelling it if it is still running once its time budget is over. The budget starts
+     * when the task starts, not while it is queued. Cancelling interrupts the thread, so the task stops between two
+     * password trials.
+     *
+     * @return The future of the task.
+     */
+    private <T> Future<T> submitWithBudget(ExecutorService pool, ScheduledExecutorService watchdog, Callable<T> task) {
+        if (fileTimeout <= 0)
+            return pool.submit(task);
+        AtomicReference<Future<T>> self = new AtomicReference<>();
+        FutureTask<T> future = new FutureTask<>(() -> {
+            ScheduledFuture<?> timer = watchdog.schedule(() -> self.get().cancel(true), fileTimeout, TimeUnit.SECONDS);
+            try {
+                return task.call();
+            } finally {
+                timer.cancel(false);
+            }
+        });
+        self.set(future);
+        pool.execute(future);
+        return future;
+    }
+
+    /**
+     * Create the pool of threads parsing the keystores, sized after the number of parsing threads or after the
+     * processors available to the container when not set.
+     *
+     * @return The pool.
+     */
+    private ExecutorService createParsingPool() {
+        int threads = parsingThreads > 0 ? parsingThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, threads), task -> {
+            Thread thread = new Thread(task, "keystore-parser-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Export all certificates from keystore files. Repositories are handled concurrently by a bounded pool of workers,
+     * and the certificates are merged following the order of the list.
+     *
      * @return List of certificates.
      */
     @Override
     public List<Cert> exportAllCert(){
-        List<Cert> listCert = new ArrayList<>();
+        List<Cert> listCert;
+        ExecutorService parsingPool = createParsingPool();
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "keystore-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
         try {
-            for(String repo: repositoriesList){
-                Map<String, String> pathFiles = bitbucketHandler.collectFiles(repo, List.of("jks"));
-                pathFiles.forEach((keystoreFile, project) -> {
-                    listCert.addAll(exportCertfromFile(keystoreFile, project));
-                });
-                utils.deleteFolder("projects");
-            }
-        } catch (IOException e) {log.error(e.getMessage());}
+            listCert = ExportWorkers.exportAll(bitbucketHandler.listRepositories(), workers,
+                    repo -> exportCertFromRepository(repo, parsingPool, watchdog));
+        } finally {
+            parsingPool.shutdownNow();
+            watchdog.shutdownNow();
+        }
+        extractionCache.save();
+        credentialMapping.save();
+        certificateCache.logStatistics();
         return listCert;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,201 @@
+package com.bmw.mapad.cma.certificateextractor.keystore;
+
+import com.bmw.mapad.cma.entity.KeystoreType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Service to find out which candidate passwords unlock a keystore by checking only its integrity: the trailing SHA-1
+ * digest of JKS and JCEKS keystores, or the MAC of PKCS#12 keystores (RFC 7292).
+ */
+@Slf4j
+@Service
+public class PasswordVerifier {
+    private static final byte[] JKS_WHITENER = "Mighty Aphrodite".getBytes(StandardCharsets.UTF_8);
+    private static final int JKS_DIGEST_SIZE = 20;
+    private static final String PKCS7_DATA = "1.2.840.113549.1.7.1";
+    private static final int PKCS12_MAC_ID = 3;
+    private static final Map<String, String[]> MAC_ALGORITHMS = Map.of(
+            "1.3.14.3.2.26", new String[]{"SHA-1", "HmacSHA1", "64"},
+            "2.16.840.1.101.3.4.2.4", new String[]{"SHA-224", "HmacSHA224", "64"},
+            "2.16.840.1.101.3.4.2.1", new String[]{"SHA-256", "HmacSHA256", "64"},
+            "2.16.840.1.101.3.4.2.2", new String[]{"SHA-384", "HmacSHA384", "128"},
+            "2.16.840.1.101.3.4.2.3", new String[]{"SHA-512", "HmacSHA512", "128"});
+
+    /**
+     * Return the candidates that pass the integrity check of the keystore, following the order of the candidates.
+     * If the integrity of the keystore cannot be checked (i.e. unsupported MAC algorithm, PKCS#12 without MAC) every
+     * candidate is returned so none is discarded by mistake.
+     *
+     * @param type       Type of the keystore.
+     * @param content    Content of the keystore.
+     * @param candidates Candidate passwords.
+     * @return The candidates that might unlock the keystore.
+     */
+    public List<char[]> filterCandidates(KeystoreType type, byte[] content, List<char[]> candidates) {
+        return filterCandidates(type, content, candidates, Function.identity());
+    }
+
+    /**
+     * Same as {@link #filterCandidates(KeystoreType, byte[], List)} for candidates holding a password, such as
+     * credentials along with the reference of their entry.
+     *
+     * @param type       Type of the keystore.
+     * @param content    Content of the keystore.
+     * @param candidates Candidates holding a password.
+     * @param password   Function returning the password of a candidate.
+     * @return The candidates that might unlock the keystore.
+     */
+    public <T> List<T> filterCandidates(KeystoreType type, byte[] content, List<T> candidates, Function<T, char[]> password) {
+        Predicate<char[]> check;
+        try {
+            check = prepare(type, content);
+        } catch (IOException | ArithmeticException e) {
+            log.debug("Integrity of the keystore cannot be checked: {}", e.getMessage());
+            check = null;
+        }
+        if (check == null)
+            return candidates;
+
+        Predicate<char[]> finalCheck = check;
+        return (candidates.size() > 1 ? candidates.parallelStream() : candidates.stream())
+                .filter(candidate -> finalCheck.test(password.apply(candidate)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Parse the keystore once and return the check to be run for each candidate.
+     *
+     * @return The check or null if the integrity of this keystore cannot be checked.
+     */
+    private Predicate<char[]> prepare(KeystoreType type, byte[] content) throws IOException {
+        switch (type) {
+            case JKS:
+            case JCEKS:
+                if (content.length <= JKS_DIGEST_SIZE)
+                    throw new IOException("Keystore too short");
+                return password -> password != null && verifyJks(content, password);
+            case PKCS12:
+                return preparePkcs12(content);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Check the trailing digest of a JKS or JCEKS keystore: SHA-1 of the password (UTF-16BE), the whitener phrase and
+     * the whole keystore but the digest itself.
+     */
+    private boolean verifyJks(byte[] content, char[] password) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            for (char c : password) {
+                sha1.update((byte) (c >> 8));
+                sha1.update((byte) c);
+            }
+            sha1.update(JKS_WHITENER);
+            int length = content.length - JKS_DIGEST_SIZE;
+            sha1.update(content, 0, length);
+            return MessageDigest.isEqual(sha1.digest(), Arrays.copyOfRange(content, length, content.length));
+        } catch (NoSuchAlgorithmException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Parse the PFX structure of a PKCS#12 keystore: the authenticated content and the MAC data.
+     */
+    private Predicate<char[]> preparePkcs12(byte[] content) throws IOException {
+        DerReader pfx = new DerReader(content).readSequence();
+        pfx.readInteger();
+        DerReader authSafe = pfx.readSequence();
+        if (!PKCS7_DATA.equals(authSafe.readOid()))
+            return null;
+        if (authSafe.peekTag() != DerReader.CONTEXT_0 || !pfx.hasMore())
+            return null;
+        DerReader explicit = authSafe.read(DerReader.CONTEXT_0);
+        if (explicit.peekTag() != DerReader.OCTET_STRING)
+            return null;
+        byte[] data = explicit.readOctetString();
+
+        DerReader macData = pfx.readSequence();
+        DerReader digestInfo = macData.readSequence();
+        String algorithm = digestInfo.readSequence().readOid();
+        byte[] expectedMac = digestInfo.readOctetString();
+        byte[] salt = macData.readOctetString();
+        int iterations = macData.hasMore() ? macData.readInteger().intValueExact() : 1;
+        String[] names = MAC_ALGORITHMS.get(algorithm);
+        if (names == null)
+            return null;
+
+        int blockSize = Integer.parseInt(names[2]);
+        return password -> password == null || password.length == 0
+                || verifyPkcs12(data, expectedMac, salt, iterations, names, blockSize, password);
+    }
+
+    /**
+     * Check the MAC of a PKCS#12 keystore, deriving the MAC key from the password as stated by RFC 7292 appendix B.
+     */
+    private boolean verifyPkcs12(byte[] data, byte[] expectedMac, byte[] salt, int iterations, String[] names,
+                                 int blockSize, char[] password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(names[0]);
+            byte[] key = deriveMacKey(digest, blockSize, salt, iterations, password);
+            Mac mac = Mac.getInstance(names[1]);
+            mac.init(new SecretKeySpec(key, names[1]));
+            return MessageDigest.isEqual(mac.doFinal(data), expectedMac);
+        } catch (GeneralSecurityException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Derive the MAC key (ID = 3) of a PKCS#12 keystore. The key is as long as the digest, so a single round of the
+     * derivation function is needed.
+     */
+    private byte[] deriveMacKey(MessageDigest digest, int blockSize, byte[] salt, int iterations, char[] password) {
+        byte[] bmpPassword = new byte[(password.length + 1) * 2];
+        for (int i = 0; i < password.length; i++) {
+            bmpPassword[2 * i] = (byte) (password[i] >> 8);
+            bmpPassword[2 * i + 1] = (byte) password[i];
+        }
+
+        byte[] diversifier = new byte[blockSize];
+        Arrays.fill(diversifier, (byte) PKCS12_MAC_ID);
+        digest.update(diversifier);
+        digest.update(fill(salt, blockSize));
+        digest.update(fill(bmpPassword, blockSize));
+        byte[] hash = digest.digest();
+        for (int i = 1; i < iterations; i++)
+            hash = digest.digest(hash);
+        Arrays.fill(bmpPassword, (byte) 0);
+        return hash;
+    }
+
+    /**
+     * Repeat a value up to the next multiple of the block size.
+     */
+    private byte[] fill(byte[] value, int blockSize) {
+        if (value.length == 0)
+            return value;
+        int length = blockSize * ((value.length + blockSize - 1) / blockSize);
+        byte[] filled = new byte[length];
+        for (int i = 0; i < length; i++)
+            filled[i] = value[i % value.length];
+        return filled;
+    }
+}
@@ -0,0 +1,154 @@
+package com.bmw.mapad.cma.certificateextractor.keystore;
+
+import com.bmw.mapad.cma.entity.KeystoreType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Lightweight reader of truststores, pulling out the summary of the trusted certificates of JKS, JCEKS and PKCS#12
+ * keystores without loading them through the JCA. Keystores holding anything else are left to the JCA.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TrustedCertificateReader {
+    private static final int JKS_MAGIC = 0xfeedfeed;
+    private static final int JCEKS_MAGIC = 0xcececece;
+    private static final int JKS_TRUSTED_CERT = 2;
+    private static final int JKS_DIGEST_SIZE = 20;
+    private static final String PKCS7_DATA = "1.2.840.113549.1.7.1";
+    private static final String CERT_BAG = "1.2.840.113549.1.12.10.1.3";
+    private static final String X509_CERTIFICATE = "1.2.840.113549.1.9.22.1";
+    private static final String FRIENDLY_NAME = "1.2.840.113549.1.9.20";
+    private static final String TRUSTED_KEY_USAGE = "2.16.840.1.113894.746875.1.1";
+
+    final CertificateCache certificateCache;
+
+    /**
+     * Read the trusted certificates of a keystore.
+     *
+     * @param type    Type of the keystore.
+     * @param content Content of the keystore.
+     * @return The summary of the certificates by alias, following the order of the keystore, or empty if the keystore
+     * is not a truststore that can be read without the JCA.
+     */
+    public Optional<Map<String, CertificateSummary>> read(KeystoreType type, byte[] content) {
+        try {
+            Map<String, CertificateSummary> certificates;
+            switch (type) {
+                case JKS:
+                case JCEKS:
+                    certificates = readJks(content);
+                    break;
+                case PKCS12:
+                    certificates = readPkcs12(content);
+                    break;
+                default:
+                    certificates = null;
+            }
+            return certificates == null || certificates.isEmpty() ? Optional.empty() : Optional.of(certificates);
+        } catch (IOException e) {
+            log.debug("Keystore could not be read as a truststore: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Walk the entries of a JKS or JCEKS keystore: magic, version, number of entries, then each entry (tag, alias,
+     * date, and for trusted certificates the type and encoding of the certificate) followed by the digest.
+     *
+     * @return The certificates, or null if an entry is not a trusted certificate.
+     */
+    private Map<String, CertificateSummary> readJks(byte[] content) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(content));
+        int magic = input.readInt();
+        int version = input.readInt();
+        if ((magic != JKS_MAGIC && magic != JCEKS_MAGIC) || (version != 1 && version != 2))
+            throw new IOException("Invalid keystore format");
+        int count = input.readInt();
+        Map<String, CertificateSummary> certificates = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            if (input.readInt() != JKS_TRUSTED_CERT)
+                return null;
+            String alias = input.readUTF();
+            input.readLong();
+            if (version == 2 && !"X.509".equals(input.readUTF()))
+                return null;
+            int length = input.readInt();
+            int offset = content.length - input.available();
+            if (length < 0 || length > input.available())
+                throw new IOException("Certificate length exceeds the keystore");
+            certificates.put(alias, certificateCache.get(new DerReader(content, offset, length)));
+            input.skipBytes(length);
+        }
+        if (input.available() != JKS_DIGEST_SIZE)
+            throw new IOException("Unexpected keystore length");
+        return certificates;
+    }
+
+    /**
+     * Walk the safe contents of a PKCS#12 keystore. Only contents stored as plain data are readable without the
+     * password, and each bag must be a X.509 certificate marked as trusted, with a friendly name which is its alias (in
+     * lower case, as the JCA does).
+     *
+     * @return The certificates, or null if a content is encrypted or a bag is not a trusted certificate.
+     */
+    private Map<String, CertificateSummary> readPkcs12(byte[] content) throws IOException {
+        DerReader pfx = new DerReader(content).readSequence();
+        pfx.readInteger();
+        DerReader authSafe = pfx.readSequence();
+        if (!PKCS7_DATA.equals(authSafe.readOid()))
+            return null;
+        DerReader contentInfos = authSafe.read(DerReader.CONTEXT_0).read(DerReader.OCTET_STRING).readSequence();
+        Map<String, CertificateSummary> certificates = new LinkedHashMap<>();
+        while (contentInfos.hasMore()) {
+            DerReader contentInfo = contentInfos.readSequence();
+            if (!PKCS7_DATA.equals(contentInfo.readOid()))
+                return null;
+            DerReader safeBags = contentInfo.read(DerReader.CONTEXT_0).read(DerReader.OCTET_STRING).readSequence();
+            while (safeBags.hasMore()) {
+                DerReader safeBag = safeBags.readSequence();
+                if (!CERT_BAG.equals(safeBag.readOid()))
+                    return null;
+                DerReader certBag = safeBag.read(DerReader.CONTEXT_0).readSequence();
+                if (!X509_CERTIFICATE.equals(certBag.readOid()))
+                    return null;
+                DerReader certificate = certBag.read(DerReader.CONTEXT_0).read(DerReader.OCTET_STRING);
+                String alias = safeBag.hasMore() ? readTrustedAlias(safeBag.read(DerReader.SET)) : null;
+                if (alias == null)
+                    return null;
+                certificates.put(alias, certificateCache.get(certificate));
+            }
+        }
+        return certificates;
+    }
+
+    /**
+     * Return the friendly name among the attributes of a bag, provided the bag is also marked as trusted.
+     */
+    private String readTrustedAlias(DerReader attributes) throws IOException {
+        String alias = null;
+        boolean trusted = false;
+        while (attributes.hasMore()) {
+            DerReader attribute = attributes.readSequence();
+            String oid = attribute.readOid();
+            if (FRIENDLY_NAME.equals(oid)) {
+                byte[] name = attribute.read(DerReader.SET).read(DerReader.BMP_STRING).remaining();
+                alias = new String(name, StandardCharsets.UTF_16BE).toLowerCase(Locale.ENGLISH);
+            } else if (TRUSTED_KEY_USAGE.equals(oid)) {
+                trusted = true;
+            }
+        }
+        return trusted ? alias : null;
+    }
+}
@@ -0,0 +1,135 @@
+package com.bmw.mapad.cma.certificateextractor.pem;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.function.Consumer;
+
+/**
+ * Service to read X.509 certificates from PEM or DER files, including bundles of several certificates, handed over one
+ * by one as they are decoded.
+ */
+@Slf4j
+@Service
+public class CertificateReader {
+    private static final int DER_SEQUENCE = 0x30;
+    private static final int DER_LONG_LENGTH = 0x80;
+    private static final int DER_MAX_LENGTH_OCTETS = 4;
+    private static final String BEGIN = "-----BEGIN ";
+    private static final String END = "-----END ";
+    private static final String[] CERTIFICATE_LABELS = {"CERTIFICATE-----", "X509 CERTIFICATE-----"};
+
+    /**
+     * Read the certificates of a PEM or DER stream. The encoding is told by the header: DER certificates start with a
+     * sequence whose length takes the long form, anything else is read as PEM. The length is checked as well since the
+     * sequence tag is the character '0', which a PEM file might start with.
+     *
+     * @param inputStream Content of the file. It is not closed.
+     * @param source      Name of the file, used in the logs.
+     * @param consumer    Consumer of each certificate read.
+     * @return Number of certificates read.
+     */
+    public int read(InputStream inputStream, String source, Consumer<X509Certificate> consumer) throws IOException {
+        CertificateFactory factory;
+        try {
+            factory = CertificateFactory.getInstance("X.509");
+        } catch (CertificateException e) {
+            throw new IOException(e);
+        }
+        BufferedInputStream buffered = new BufferedInputStream(inputStream);
+        buffered.mark(2);
+        int first = buffered.read();
+        if (first == -1)
+            return 0;
+        int second = buffered.read();
+        buffered.reset();
+        return isDerHeader(first, second) ? readDer(factory, buffered, source, consumer) : readPem(factory, buffered, source, consumer);
+    }
+
+    /**
+     * Tell whether the first two bytes are the header of a DER certificate: a sequence tag followed by a length in the
+     * long form, with 1 to 4 length octets. A certificate never fits in 127 bytes, so the short form is ruled out.
+     */
+    private boolean isDerHeader(int first, int second) {
+        if (first != DER_SEQUENCE || second == -1 || (second & DER_LONG_LENGTH) == 0)
+            return false;
+        int lengthOctets = second & ~DER_LONG_LENGTH;
+        return lengthOctets >= 1 && lengthOctets <= DER_MAX_LENGTH_OCTETS;
+    }
+
+    /**
+     * Read concatenated DER certificates, one after another straight from the stream.
+     */
+    private int readDer(CertificateFactory factory, BufferedInputStream inputStream, String source,
+                        Consumer<X509Certificate> consumer) throws IOException {
+        int count = 0;
+        while (true) {
+            inputStream.mark(1);
+            if (inputStream.read() == -1)
+                return count;
+            inputStream.reset();
+            try {
+                consumer.accept((X509Certificate) factory.generateCertificate(inputStream));
+                count++;
+            } catch (CertificateException e) {
+                //The rest of the stream cannot be delimited once a DER certificate is broken
+                log.warn("Certificate {} could not be parsed: {}", source, e.getMessage());
+                return count;
+            }
+        }
+    }
+
+    /**
+     * Read the certificate blocks of a PEM stream line by line, decoding each block as soon as its end is reached.
+     * A broken block is skipped without discarding the rest of the bundle.
+     */
+    private int readPem(CertificateFactory factory, InputStream inputStream, String source,
+                        Consumer<X509Certificate> consumer) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.US_ASCII));
+        StringBuilder block = new StringBuilder();
+        boolean inCertificate = false;
+        int count = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.startsWith(BEGIN)) {
+                inCertificate = isCertificate(line.substring(BEGIN.length()));
+                block.setLength(0);
+            } else if (line.startsWith(END)) {
+                if (inCertificate) {
+                    try {
+                        byte[] der = Base64.getMimeDecoder().decode(block.toString());
+                        consumer.accept((X509Certificate) factory.generateCertificate(new ByteArrayInputStream(der)));
+                        count++;
+                    } catch (CertificateException | IllegalArgumentException e) {
+                        log.warn("Certificate {} could not be parsed: {}", source, e.getMessage());
+                    }
+                }
+                inCertificate = false;
+                block.setLength(0);
+            } else if (inCertificate) {
+                block.append(line);
+            }
+        }
+        return count;
+    }
+
+    private boolean isCertificate(String label) {
+        for (String certificateLabel : CERTIFICATE_LABELS) {
+            if (label.equals(certificateLabel))
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,83 @@
+package com.bmw.mapad.cma.certificateextractor.pem;
+
+import com.bmw.mapad.cma.certificateextractor.ExportWorkers;
+import com.bmw.mapad.cma.certificateextractor.ExtractorStrategy;
+import com.bmw.mapad.cma.certificateextractor.keystore.CertificateCache;
+import com.bmw.mapad.cma.crawler.FilesImporter;
+import com.bmw.mapad.cma.entity.Cert;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Service to extract the certificates stored as PEM or DER files (ex: .pem, .crt), including bundles of several
+ * certificates, found by the files importer as keystores are.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service("pem")
+public class PemExporterService implements ExtractorStrategy {
+    @Value("${cma.crawler.bitbucket.workers:4}")
+    int workers;
+    @Value("${cma.extractor.pem.extensions:pem,crt,cer,der}")
+    String[] extensions;
+    final FilesImporter filesImporter;
+    final CertificateReader certificateReader;
+    final CertificateCache certificateCache;
+
+    /**
+     * Returns all certificates stored in a PEM or DER file.
+     *
+     * @param pathFile Path of the file.
+     * @param project  Project which the file belongs to.
+     * @return The set of certificates stored in the file.
+     */
+    public List<Cert> exportCertfromFile(String pathFile, String project) {
+        List<Cert> storedCertificates = new ArrayList<>();
+        try (InputStream inputStream = Files.newInputStream(Paths.get(pathFile))) {
+            certificateReader.read(inputStream, pathFile, certificate -> storedCertificates.add(certificateCache.get(certificate)
+                    .toCert(certificate.getSubjectX500Principal().getName(), project, pathFile)));
+        } catch (IOException e) {
+            log.error("Certificate file {} could not be read: {}", pathFile, e.getMessage());
+        }
+        return storedCertificates;
+    }
+
+    /**
+     * Export all certificates from the PEM and DER files found in a single repository. The local copy of the
+     * repository is released afterwards regardless of the outcome.
+     *
+     * @param repository Repository to be fetched.
+     * @return List of certificates.
+     */
+    List<Cert> exportCertFromRepository(String repository) {
+        List<Cert> repositoryCerts = new ArrayList<>();
+        try {
+            filesImporter.collectFiles(repository, Arrays.asList(extensions))
+                    .forEach((pathFile, project) -> repositoryCerts.addAll(exportCertfromFile(pathFile, project)));
+        } finally {
+            filesImporter.release(repository);
+        }
+        return repositoryCerts;
+    }
+
+    /**
+     * Export all certificates from PEM and DER files. The repositories are listed by the files importer, then handled
+     * concurrently by a bounded pool of workers, and the certificates are merged following the order of the list.
+     *
+     * @return List of certificates.
+     */
+    @Override
+    public List<Cert> exportAllCert() {
+        return ExportWorkers.exportAll(filesImporter.listRepositories(), workers, this::exportCertFromRepository);
+    }
+}
@@ -0,0 +1,294 @@
+package com.bmw.mapad.cma.crawler;
+
+import com.bmw.mapad.cma.entity.KeystoreFile;
+import com.bmw.mapad.cma.entity.KeystoreType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Service to find keystores embedded in archives (i.e. jar, war, zip, tar.gz) without extracting them to disk. Archives
+ * are streamed entry by entry, up to a maximum size and nesting depth.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ArchiveScanner {
+    public static final String ENTRY_SEPARATOR = "!/";
+    private static final int TAR_BLOCK_SIZE = 512;
+
+    @Value("${cma.crawler.archives.extensions:jar,war,ear,zip,tar.gz,tgz,tar}")
+    String[] extensions;
+    @Value("${cma.crawler.archives.max-depth:2}")
+    int maxDepth;
+    @Value("${cma.crawler.archives.max-size:268435456}")
+    long maxSize;
+    @Value("${cma.crawler.archives.max-entry-size:10485760}")
+    int maxEntrySize;
+
+    final KeystoreTypeDetector keystoreTypeDetector;
+
+    private volatile FileMatcher archiveMatcher;
+
+    /**
+     * Check if a file is an archive to be scanned. Archives are never scanned when the maximum depth is 0.
+     *
+     * @param path Path of the file.
+     * @return true if it is an archive otherwise false.
+     */
+    public boolean isArchive(Path path) {
+        if (maxDepth <= 0)
+            return false;
+        if (archiveMatcher == null)
+            archiveMatcher = FileMatcher.ofSuffixes(Arrays.asList(extensions));
+        return archiveMatcher.matches(path);
+    }
+
+    /**
+     * Return the keystores embedded in an archive file.
+     *
+     * @param archive Path of the archive.
+     * @param project Project which the archive belongs to.
+     * @param include Matcher of the candidate entries.
+     * @return The keystores found along with their type and content.
+     */
+    public List<KeystoreFile> scan(Path archive, String project, Predicate<Path> include) {
+        try (InputStream inputStream = Files.newInputStream(archive)) {
+            return scan(archive.toString(), inputStream, Files.size(archive), project, include);
+        } catch (IOException e) {
+            log.warn("Archive {} could not be read. {}", archive, e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Return the keystores embedded in an archive read from a stream. Each keystore is named after the archive and
+     * its entry (i.e. app.war!/WEB-INF/classes/server.jks).
+     *
+     * @param archivePath Path of the archive.
+     * @param inputStream Content of the archive. It is not closed.
+     * @param size        Size of the archive, or -1 if unknown.
+     * @param project     Project which the archive belongs to.
+     * @param include     Matcher of the candidate entries.
+     * @return The keystores found along with their type and content.
+     */
+    public List<KeystoreFile> scan(String archivePath, InputStream inputStream, long size, String project,
+                                   Predicate<Path> include) {
+        List<KeystoreFile> keystores = new ArrayList<>();
+        if (size > maxSize) {
+            log.warn("Archive {} skipped, its size {} exceeds the limit.", archivePath, size);
+            return keystores;
+        }
+        try {
+            scanArchive(archivePath, inputStream, 1, project, include, keystores);
+        } catch (IOException e) {
+            log.warn("Archive {} could not be scanned completely. {}", archivePath, e.getMessage());
+        }
+        return keystores;
+    }
+
+    /**
+     * Scan the entries of an archive, descending into the nested archives while the maximum depth is not reached.
+     * The stream passed as argument is never closed, so nested archives can be read from their enclosing entry.
+     */
+    private void scanArchive(String archivePath, InputStream inputStream, int depth, String project,
+                             Predicate<Path> include, List<KeystoreFile> keystores) throws IOException {
+        InputStream limited = new BoundedInputStream(inputStream, maxSize, true);
+        String name = archivePath.toLowerCase();
+        if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+            try (InputStream tar = new GZIPInputStream(limited)) {
+                scanTar(archivePath, tar, depth, project, include, keystores);
+            }
+        } else if (name.endsWith(".tar")) {
+            scanTar(archivePath, limited, depth, project, include, keystores);
+        } else {
+            try (ZipInputStream zip = new ZipInputStream(limited)) {
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    if (!entry.isDirectory())
+                        scanEntry(archivePath, entry.getName(), entry.getSize(), zip, depth, project, include, keystores);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scan the entries of a tar stream. Only regular files are taken into account, along with the GNU long names.
+     */
+    private void scanTar(String archivePath, InputStream tar, int depth, String project,
+                         Predicate<Path> include, List<KeystoreFile> keystores) throws IOException {
+        String longName = null;
+        while (true) {
+            byte[] header = tar.readNBytes(TAR_BLOCK_SIZE);
+            if (header.length < TAR_BLOCK_SIZE || header[0] == 0)
+                return;
+            long size = parseOctal(header, 124, 12);
+            byte type = header[156];
+            InputStream entry = new BoundedInputStream(tar, size, false);
+            if (type == 'L') {
+                longName = trimNul(entry.readNBytes((int) Math.min(size, maxEntrySize)));
+            } else {
+                String name = longName != null ? longName : getTarName(header);
+                longName = null;
+                if (type == '0' || type == 0)
+                    scanEntry(archivePath, name, size, entry, depth, project, include, keystores);
+            }
+            entry.transferTo(OutputStream.nullOutputStream());
+            long padding = (TAR_BLOCK_SIZE - size % TAR_BLOCK_SIZE) % TAR_BLOCK_SIZE;
+            tar.readNBytes((int) padding);
+        }
+    }
+
+    /**
+     * Handle a single entry: nested archives are scanned, candidate entries are read and classified.
+     */
+    private void scanEntry(String archivePath, String entryName, long size, InputStream entry, int depth,
+                           String project, Predicate<Path> include, List<KeystoreFile> keystores) throws IOException {
+        if (entryName.startsWith("./"))
+            entryName = entryName.substring(2);
+        String pathFile = archivePath + ENTRY_SEPARATOR + entryName;
+        Path entryPath = Paths.get(entryName);
+        if (isArchive(entryPath)) {
+            if (depth >= maxDepth)
+                log.debug("Archive {} skipped, nesting depth limit reached.", pathFile);
+            else if (size > maxSize)
+                log.warn("Archive {} skipped, its size {} exceeds the limit.", pathFile, size);
+            else
+                scanArchive(pathFile, entry, depth + 1, project, include, keystores);
+            return;
+        }
+        if (!include.test(entryPath))
+            return;
+        byte[] content = entry.readNBytes(maxEntrySize + 1);
+        if (content.length > maxEntrySize) {
+            log.warn("Entry {} skipped, its size exceeds the limit.", pathFile);
+            return;
+        }
+        KeystoreType type = keystoreTypeDetector.detect(content);
+        if (type != KeystoreType.UNKNOWN) {
+            KeystoreFile keystore = new KeystoreFile(pathFile, project);
+            keystore.setType(type);
+            keystore.setContent(content);
+            keystores.add(keystore);
+        }
+    }
+
+    /**
+     * Return the name of a tar entry, joining the ustar prefix when present.
+     */
+    private String getTarName(byte[] header) {
+        String name = trimNul(Arrays.copyOfRange(header, 0, 100));
+        boolean ustar = new String(header, 257, 5, StandardCharsets.US_ASCII).equals("ustar");
+        String prefix = ustar ? trimNul(Arrays.copyOfRange(header, 345, 500)) : "";
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    /**
+     * Return the text of a tar field, up to the first NUL character.
+     */
+    private String trimNul(byte[] field) {
+        int length = 0;
+        while (length < field.length && field[length] != 0)
+            length++;
+        return new String(field, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parse a numeric tar field written in octal. Sizes written in base-256 are flagged by the high bit and taken as
+     * the biggest size, so they end up beyond the limits.
+     */
+    private long parseOctal(byte[] header, int offset, int length) throws IOException {
+        if ((header[offset] & 0x80) != 0)
+            return Long.MAX_VALUE;
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte digit = header[i];
+            if (digit == 0 || digit == ' ') {
+                if (value > 0)
+                    break;
+                continue;
+            }
+            if (digit < '0' || digit > '7')
+                throw new IOException("Invalid tar header");
+            value = (value << 3) + (digit - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Stream reading at most a number of bytes from the underlying stream, which is never closed. Once the limit is
+     * reached it either reports the end of the stream or fails.
+     */
+    private static class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+        private final boolean failOnLimit;
+
+        BoundedInputStream(InputStream in, long limit, boolean failOnLimit) {
+            super(in);
+            this.remaining = limit;
+            this.failOnLimit = failOnLimit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!checkRemaining())
+                return -1;
+            int read = super.read();
+            if (read != -1)
+                remaining--;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (!checkRemaining())
+                return -1;
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0)
+                remaining -= read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public void close() {
+            //The enclosing stream is closed by its owner
+        }
+
+        private boolean checkRemaining() throws IOException {
+            if (remaining > 0)
+                return true;
+            if (failOnLimit && super.read() != -1)
+                throw new IOException("Archive size exceeds the limit");
+            return false;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.bmw.mapad.cma.crawler;
+
+import com.bmw.mapad.cma.crawler.dto.RepositoriesPage;
+import com.bmw.mapad.cma.utils.httpClient.BitbucketApi;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Service to discover every repository of the configured Bitbucket projects through the paginated rest api. The listing
+ * is kept for a short time to live.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BitbucketDiscoveryService {
+    @Value("${cma.crawler.bitbucket.projects:}")
+    String[] projects;
+    @Value("${cma.crawler.bitbucket.discovery.page-size:100}")
+    int pageSize;
+    @Value("${cma.crawler.bitbucket.discovery.concurrency:4}")
+    int concurrency;
+    @Value("${cma.crawler.bitbucket.discovery.ttl:300}")
+    long ttl;
+
+    @Qualifier("bitbucketClient")
+    final BitbucketApi bitbucketClient;
+
+    private List<String> cachedRepositories;
+    private long cachedAt;
+
+    /**
+     * Return the clone url of every repository of the configured projects. The listing is taken from the cache while
+     * its time to live (in seconds) has not expired. If some project could not be listed the result is not cached.
+     *
+     * @return List of clone urls.
+     */
+    public synchronized List<String> discoverRepositories() {
+        if (cachedRepositories != null && System.currentTimeMillis() - cachedAt < ttl * 1000)
+            return cachedRepositories;
+
+        Set<String> repositories = new LinkedHashSet<>();
+        boolean complete = true;
+        ExecutorService pagePool = Executors.newFixedThreadPool(Math.max(1, concurrency));
+        try {
+            for (String project : projects) {
+                if (project.isBlank())
+                    continue;
+                try {
+                    repositories.addAll(listRepositories(project.trim(), pagePool));
+                } catch (IOException e) {
+                    complete = false;
+                    log.error("Repositories of project {} could not be listed. {}", project, e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Discovery of repositories has been interrupted.");
+            complete = false;
+        } finally {
+            pagePool.shutdownNow();
+        }
+
+        List<String> result = new ArrayList<>(repositories);
+        if (complete) {
+            cachedRepositories = result;
+            cachedAt = System.currentTimeMillis();
+        }
+        log.info("{} repositories discovered.", result.size());
+        return result;
+    }
+
+    /**
+     * List all the repositories of a project. The first page tells the actual page size, then the following pages are
+     * requested in waves of as many pages as the concurrency level, until the last page is found.
+     *
+     * @param project  Key of the project.
+     * @param pagePool Pool of workers fetching the pages.
+     * @return List of clone urls following the order of the pages.
+     */
+    List<String> listRepositories(String project, ExecutorService pagePool) throws IOException, InterruptedException {
+        RepositoriesPage firstPage = fetchPage(project, 0);
+        List<String> repositories = new ArrayList<>(firstPage.mapToCloneUrls());
+        if (firstPage.isLastPage || firstPage.nextPageStart == null)
+            return repositories;
+
+        int stride = firstPage.limit > 0 ? firstPage.limit : pageSize;
+        int nextStart = firstPage.nextPageStart;
+        boolean lastPage = false;
+        while (!lastPage) {
+            List<Future<RepositoriesPage>> wave = new ArrayList<>();
+            for (int i = 0; i < Math.max(1, concurrency); i++) {
+                int start = nextStart + i * stride;
+                wave.add(pagePool.submit(() -> fetchPage(project, start)));
+            }
+            for (Future<RepositoriesPage> future : wave) {
+                if (lastPage) {
+                    future.cancel(true);
+                    continue;
+                }
+                RepositoriesPage page = getPage(future);
+                repositories.addAll(page.mapToCloneUrls());
+                lastPage = page.isLastPage || page.values == null || page.values.isEmpty();
+            }
+            nextStart += wave.size() * stride;
+        }
+        return repositories;
+    }
+
+    /**
+     * Fetch a single page of repositories.
+     *
+     * @param project Key of the project.
+     * @param start   Index of the first repository of the page.
+     * @return The page retrieved.
+     */
+    private RepositoriesPage fetchPage(String project, int start) throws IOException {
+        Response<RepositoriesPage> response = bitbucketClient.getRepositories(project, start, pageSize).execute();
+        if (!response.isSuccessful() || response.body() == null)
+            throw new IOException(String.format("Code: %s Msg: %s", response.code(), response.message()));
+        return response.body();
+    }
+
+    /**
+     * Wait for a page to be fetched, unwrapping the error raised while fetching it.
+     */
+    private RepositoriesPage getPage(Future<RepositoriesPage> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -1,22 +1,37 @@
 package com.bmw.mapad.cma.crawler;
 
+import com.bmw.mapad.cma.credentialsmanagement.CredentialsDatabase;
+import com.bmw.mapad.cma.entity.KeystoreFile;
+import com.bmw.mapad.cma.entity.KeystoreType;
 import com.bmw.mapad.cma.utils.Utils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.CloneCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.CredentialsProvider;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.Predicate;
 
 /**
  * Represents a service which enable fetching all the files from a bitbucket repository.
@@ -25,10 +40,13 @@ import java.util.stream.Stream;
 @Slf4j
 @RequiredArgsConstructor
 @Service
+@ConditionalOnProperty(name = "cma.crawler.source", havingValue = "bitbucket", matchIfMissing = true)
 public class BitbucketImporterService implements FilesImporter {
     public static final String USER_DIR = System.getProperty("user.dir");
     public static final String FOLDER_NAME = "projects";
 
+    @Value("${cma.crawler.bitbucket.repositories:}")
+    String[] repositories;
     @Value("${cma.crawler.bitbucket.user}")
     String user;
 
@@ -36,59 +54,302 @@ public class BitbucketImporterService implements FilesImporter {
     String token;
     @Value("${cma.crawler.bitbucket.ignore-certs}")
     String[] certsToIgnore;
+    @Value("${cma.crawler.bitbucket.clone-mode:full}")
+    String cloneMode;
+    @Value("${cma.crawler.bitbucket.clone-modes:}")
+    String[] cloneModes;
+    @Value("${cma.crawler.bitbucket.in-memory:false}")
+    boolean inMemory;
+    @Value("${cma.crawler.scanner.extensionless:false}")
+    boolean extensionless;
 
     final Utils utils;
+    final MirrorCache mirrorCache;
+    final FileScanner fileScanner;
+    final KeystoreTypeDetector keystoreTypeDetector;
+    final BitbucketDiscoveryService discoveryService;
+    final ArchiveScanner archiveScanner;
+    final CredentialsDatabase credentialsDatabase;
 
     /**
-     * Clone a specific git repository passed as argument.
+     * Return the repositories configured by hand followed by the ones discovered from the configured projects,
+     * without duplicates.
      *
-     * @param urlRepo The target repository to be cloned.
+     * @return List of repository urls.
      */
-    private String cloneRepository(String urlRepo) {
-        String projectName = (urlRepo.lastIndexOf('/') != -1 && urlRepo.lastIndexOf('.') != -1) ?
-                urlRepo.substring(urlRepo.lastIndexOf('/') + 1, urlRepo.lastIndexOf('.')) : "project";
+    @Override
+    public List<String> listRepositories() {
+        Set<String> result = new LinkedHashSet<>();
+        for (String repository : repositories) {
+            if (!repository.isBlank())
+                result.add(repository.trim());
+        }
+        result.addAll(discoveryService.discoverRepositories());
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Clone a specific git repository passed as argument using the clone mode given.
+     *
+     * @param urlRepo   The target repository to be cloned.
+     * @param directory Working directory where the repository should be cloned into.
+     * @param include   Matcher of the files that are relevant within the repository.
+     * @param mode      Clone mode to be used.
+     */
+    private String cloneRepository(String urlRepo, File directory, Predicate<Path> include, CloneMode mode) {
+        String projectName = getProjectName(urlRepo);
+        CredentialsProvider credentials = new UsernamePasswordCredentialsProvider(user, token);
         try {
-            File file = new File(FOLDER_NAME + System.getProperty("file.separator") + projectName);
-            if (file.mkdirs()) {
-                Git.cloneRepository()
-                        .setURI(urlRepo)
-                        .setCredentialsProvider(new UsernamePasswordCredentialsProvider(user, token))
-                        .setDirectory(Paths.get(FOLDER_NAME + System.getProperty("file.separator") + projectName).toFile())
-                        .call()
-                        .close();
-                log.info("Repository cloned successfully: {}", projectName);
+            switch (mode) {
+                case SHALLOW:
+                    //Cloned bare, since a clone without checkout does not set its HEAD
+                    File gitDirectory = new File(directory, Constants.DOT_GIT);
+                    try (Git git = prepareClone(urlRepo, gitDirectory, credentials).setBare(true).call()) {
+                        checkoutMatchingFiles(git.getRepository(), directory.toPath(), include);
+                    }
+                    break;
+                case MIRROR:
+                    try (Repository mirror = mirrorCache.update(urlRepo, getRepositoryPath(urlRepo), credentials)) {
+                        checkoutMatchingFiles(mirror, directory.toPath(), include);
+                    }
+                    break;
+                default:
+                    prepareClone(urlRepo, directory, credentials).call().close();
             }
-
-        } catch (GitAPIException e) {
+            log.info("Repository cloned successfully: {}", projectName);
+        } catch (GitAPIException | IOException e) {
             log.warn("Error occurred while cloning the repo.");
         }
         return projectName;
     }
 
     /**
-     * Return all the extensions file found after the scanning process within a folder.
+     * Prepare the command to clone a repository. In shallow mode only the tip of the default branch is cloned, with
+     * depth 1 and without tags.
      *
-     * @return List of path files that matches the target extension file.
-     * @throws IOException
+     * @param urlRepo     The target repository to be cloned.
+     * @param directory   Directory where the repository should be cloned into.
+     * @param credentials Credentials to access the repository.
+     * @return Clone command ready to be called.
+     */
+    private CloneCommand prepareClone(String urlRepo, File directory, CredentialsProvider credentials) throws GitAPIException {
+        CloneCommand clone = Git.cloneRepository()
+                .setURI(urlRepo)
+                .setCredentialsProvider(credentials)
+                .setDirectory(directory);
+        if (getCloneMode(urlRepo) == CloneMode.SHALLOW) {
+            String branch = getDefaultBranch(urlRepo, credentials);
+            clone.setBranchesToClone(List.of(branch))
+                    .setBranch(branch)
+                    .setDepth(1)
+                    .setNoTags();
+        }
+        return clone;
+    }
+
+    /**
+     * Ask the remote which branch its HEAD points to.
+     *
+     * @param urlRepo     Url of the repository.
+     * @param credentials Credentials to access the repository.
+     * @return Full name of the default branch (i.e refs/heads/master).
+     */
+    private String getDefaultBranch(String urlRepo, CredentialsProvider credentials) throws GitAPIException {
+        Map<String, Ref> refs = Git.lsRemoteRepository()
+                .setRemote(urlRepo)
+                .setCredentialsProvider(credentials)
+                .callAsMap();
+        Ref head = refs.get(Constants.HEAD);
+        if (head != null && head.isSymbolic()) {
+            return head.getTarget().getName();
+        }
+        return refs.values().stream()
+                .filter(ref -> head != null && ref.getName().startsWith(Constants.R_HEADS))
+                .filter(ref -> head.getObjectId().equals(ref.getObjectId()))
+                .map(Ref::getName)
+                .findFirst()
+                .orElse(Constants.R_HEADS + Constants.MASTER);
+    }
+
+    /**
+     * Return the files from HEAD matching the predicate passed as argument, walking the commit tree straight from the
+     * object database.
+     *
+     * @param repository Repository to be walked. It might be bare.
+     * @param include    Matcher of the files to be found.
+     * @return The path of each file within the repository along with its blob id.
+     */
+    private Map<String, ObjectId> findMatchingFiles(Repository repository, Predicate<Path> include) throws IOException {
+        Map<String, ObjectId> files = new LinkedHashMap<>();
+        ObjectId head = repository.resolve(Constants.HEAD);
+        if (head == null)
+            return files;
+
+        try (RevWalk revWalk = new RevWalk(repository); TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.addTree(revWalk.parseCommit(head).getTree());
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(new PathPredicateFilter(include));
+            while (treeWalk.next()) {
+                if (treeWalk.getFileMode(0).getObjectType() == Constants.OBJ_BLOB)
+                    files.put(treeWalk.getPathString(), treeWalk.getObjectId(0));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Write a blob from the object database of a repository to disk.
+     *
+     * @param repository Repository holding the blob.
+     * @param blobId     Id of the blob.
+     * @param target     Path of the file to be written.
+     */
+    private void writeFile(Repository repository, ObjectId blobId, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try (OutputStream out = Files.newOutputStream(target)) {
+            repository.open(blobId, Constants.OBJ_BLOB).copyTo(out);
+        }
+    }
+
+    /**
+     * Write to the working directory only the files from HEAD matching the predicate passed as argument or the
+     * credentials database.
+     *
+     * @param repository Bare repository, either cloned or mirror.
+     * @param directory  Working directory of the repository.
+     * @param include    Matcher of the files to be written.
      */
-    private Map<String, String> scanForTargetFiles(List<String> extensions, String project) throws IOException {
-        Map<String, String> result = new HashMap<>();
+    private void checkoutMatchingFiles(Repository repository, Path directory, Predicate<Path> include) throws IOException {
+        for (Map.Entry<String, ObjectId> file : findMatchingFiles(repository, include.or(credentialsDatabase::matches)).entrySet())
+            writeFile(repository, file.getValue(), directory.resolve(file.getKey()));
+    }
+
+    /**
+     * Read in memory the candidate files from HEAD, without any working tree. Only the credentials database is written
+     * to the working directory, so it can be registered.
+     *
+     * @param repository Repository to be read. It might be bare.
+     * @param directory  Working directory of the repository, which the paths of the files are relative to.
+     * @param include    Matcher of the candidate files.
+     * @param project    Name of the project.
+     * @return Keystore files holding their type, content and blob id.
+     */
+    private List<KeystoreFile> readMatchingFiles(Repository repository, Path directory, Predicate<Path> include,
+                                                 String project) throws IOException {
+        List<KeystoreFile> keystores = new ArrayList<>();
+        FileMatcher exclude = FileMatcher.ofSuffixes(Arrays.asList(certsToIgnore));
+        Predicate<Path> candidates = include.or(archiveScanner::isArchive).or(credentialsDatabase::matches);
+        for (Map.Entry<String, ObjectId> file : findMatchingFiles(repository, candidates).entrySet()) {
+            Path pathFile = directory.resolve(file.getKey());
+            if (credentialsDatabase.matches(pathFile)) {
+                writeFile(repository, file.getValue(), pathFile);
+                credentialsDatabase.register(pathFile);
+            }
+            if (exclude.matches(pathFile))
+                continue;
+
+            ObjectLoader loader = repository.open(file.getValue(), Constants.OBJ_BLOB);
+            if (archiveScanner.isArchive(pathFile)) {
+                try (InputStream inputStream = loader.openStream()) {
+                    keystores.addAll(archiveScanner.scan(pathFile.toString(), inputStream, loader.getSize(), project, include));
+                }
+                continue;
+            }
+            if (!include.test(pathFile))
+                continue;
 
-        try (Stream<Path> walk = Files.walk(Paths.get(FOLDER_NAME))) {
-            walk
-                    .filter(p -> !Files.isDirectory(p))
-                    .map(Path::toString)
-                    .filter(f -> utils.isEndWith(f, extensions))
-                    .filter(f -> Arrays.stream(certsToIgnore)
-                            .noneMatch(f::endsWith))
-                    .forEach(p -> result.put(p, project));
+            KeystoreType type;
+            try (InputStream inputStream = loader.openStream()) {
+                type = keystoreTypeDetector.detect(inputStream.readNBytes(KeystoreTypeDetector.HEADER_SIZE));
+            }
+            if (type != KeystoreType.UNKNOWN) {
+                KeystoreFile keystore = new KeystoreFile(pathFile.toString(), project);
+                keystore.setType(type);
+                keystore.setBlobId(file.getValue().name());
+                keystore.setContent(loader.getBytes());
+                keystores.add(keystore);
+            }
+        }
+        return keystores;
+    }
+
+    /**
+     * Resolve the clone mode of a repository. Modes can be set per repository through entries like
+     * {@code <repository name or url>:<mode>}, otherwise the default clone mode is used.
+     *
+     * @param urlRepo Url of the repository.
+     * @return Clone mode for this repository.
+     */
+    CloneMode getCloneMode(String urlRepo) {
+        String projectName = getProjectName(urlRepo);
+        for (String entry : cloneModes) {
+            int separator = entry.lastIndexOf(':');
+            if (separator != -1) {
+                String target = entry.substring(0, separator).trim();
+                if (target.equals(urlRepo) || target.equals(projectName))
+                    return CloneMode.stringToCloneMode(entry.substring(separator + 1));
+            }
         }
+        return CloneMode.stringToCloneMode(cloneMode);
+    }
+
+    /**
+     * Extract the project name from the url of the repository.
+     *
+     * @param urlRepo Url of the repository.
+     * @return Name of the repository.
+     */
+    String getProjectName(String urlRepo) {
+        return (urlRepo.lastIndexOf('/') != -1 && urlRepo.lastIndexOf('.') != -1) ?
+                urlRepo.substring(urlRepo.lastIndexOf('/') + 1, urlRepo.lastIndexOf('.')) : "project";
+    }
+
+    /**
+     * Resolve the relative path of a repository, named after its bitbucket project and repository name.
+     *
+     * @param urlRepo Url of the repository.
+     * @return Relative path of the repository.
+     */
+    Path getRepositoryPath(String urlRepo) {
+        String[] segments = urlRepo.split("/");
+        String owner = segments.length > 1 ? segments[segments.length - 2] : "";
+        return Paths.get(owner, getProjectName(urlRepo));
+    }
+
+    /**
+     * Resolve the working directory of a repository. Each repository owns a dedicated folder so several repositories
+     * can be handled at the same time.
+     *
+     * @param urlRepo Url of the repository.
+     * @return Path of the working directory.
+     */
+    Path getWorkingDirectory(String urlRepo) {
+        return Paths.get(FOLDER_NAME).resolve(getRepositoryPath(urlRepo));
+    }
+
+    /**
+     * Return all the files found after the scanning process within a folder. Folders matching the pruning rules of
+     * the scanner are skipped. The credentials database, if found, is registered.
+     *
+     * @param directory Folder to be scanned.
+     * @param include   Matcher of the target files.
+     * @return List of path files that matches the target extension file.
+     */
+    private Map<String, String> scanForTargetFiles(Path directory, Predicate<Path> include, String project) {
+        Map<String, String> result = new LinkedHashMap<>();
+        fileScanner.scan(directory, include.or(credentialsDatabase::matches), FileMatcher.ofSuffixes(Arrays.asList(certsToIgnore)))
+                .forEach(p -> {
+                    if (credentialsDatabase.matches(p))
+                        credentialsDatabase.register(p);
+                    if (include.test(p))
+                        result.put(p.toString(), project);
+                });
         return result;
     }
 
     /**
-     * Clone a specific repository passed as parameter. If cloned successfully walk through the files.
-     * tree within a specific folder and retrieve the path files by a given set of extensions files.
+     * Clone a specific repository passed as parameter with the clone mode configured for it and retrieve the path
+     * files by a given set of extensions files.
      *
      * @param repository Repository to be fetched.
      * @param extensions Extensions or name of the file to be sought within the repository aforementioned.
@@ -96,18 +357,125 @@ public class BitbucketImporterService implements FilesImporter {
      */
     @Override
     public Map<String, String> collectFiles(String repository, List<String> extensions) {
+        return collectFiles(repository, FileMatcher.ofSuffixes(extensions), getCloneMode(repository));
+    }
+
+    /**
+     * Clone a specific repository passed as parameter and retrieve the path of the files matching the predicate.
+     *
+     * @param repository Repository to be fetched.
+     * @param include    Matcher of the files to be sought within the repository aforementioned.
+     * @param mode       Clone mode to be used.
+     * @return The collection of path file which matches with the predicate aforementioned.
+     */
+    private Map<String, String> collectFiles(String repository, Predicate<Path> include, CloneMode mode) {
         Map<String, String> filesFound = new HashMap<>();
+        Path directory = getWorkingDirectory(repository);
         try {
-            File file = new File(USER_DIR + System.getProperty("file.separator") + FOLDER_NAME);
-            if (file.exists())
-                utils.deleteFolder(FOLDER_NAME);
-            if (file.mkdirs()) {
-                String projectName = cloneRepository(repository);
-                filesFound = scanForTargetFiles(extensions, projectName);
+            if (Files.exists(directory))
+                utils.deleteFolder(directory.toString());
+            if (directory.toFile().mkdirs()) {
+                String projectName = cloneRepository(repository, directory.toFile(), include, mode);
+                filesFound = scanForTargetFiles(directory, include, projectName);
             }
         } catch (IOException e) {
             log.warn("An error occurred while scanning for files. " + e.getMessage());
         }
         return filesFound;
     }
+
+    /**
+     * Fetch a specific repository passed as parameter and retrieve the keystore files, classified by sniffing their
+     * header. In memory mode the files are read straight from the object database, otherwise its working directory is
+     * scanned.
+     *
+     * @param repository Repository to be fetched.
+     * @param extensions Extensions or name of the file to be sought within the repository aforementioned.
+     * @return The keystore files found along with their type.
+     */
+    @Override
+    public List<KeystoreFile> collectKeystores(String repository, List<String> extensions) {
+        List<KeystoreFile> keystores = new ArrayList<>();
+        Predicate<Path> include = FileMatcher.ofCandidates(extensions, extensionless);
+        if (!inMemory) {
+            Predicate<Path> candidates = include.or(archiveScanner::isArchive);
+            collectFiles(repository, candidates, getCloneMode(repository)).forEach((pathFile, project) -> {
+                if (archiveScanner.isArchive(Paths.get(pathFile))) {
+                    keystores.addAll(archiveScanner.scan(Paths.get(pathFile), project, include));
+                    return;
+                }
+                KeystoreType type = keystoreTypeDetector.detect(Paths.get(pathFile));
+                if (type != KeystoreType.UNKNOWN) {
+                    KeystoreFile keystore = new KeystoreFile(pathFile, project);
+                    keystore.setType(type);
+                    keystores.add(keystore);
+                }
+            });
+            return keystores;
+        }
+
+        Path directory = getWorkingDirectory(repository);
+        String projectName = getProjectName(repository);
+        CredentialsProvider credentials = new UsernamePasswordCredentialsProvider(user, token);
+        try {
+            if (Files.exists(directory))
+                utils.deleteFolder(directory.toString());
+            if (getCloneMode(repository) == CloneMode.MIRROR) {
+                try (Repository mirror = mirrorCache.update(repository, getRepositoryPath(repository), credentials)) {
+                    keystores.addAll(readMatchingFiles(mirror, directory, include, projectName));
+                }
+            } else {
+                File gitDirectory = directory.resolve(Constants.DOT_GIT).toFile();
+                try (Git git = prepareClone(repository, gitDirectory, credentials).setBare(true).call()) {
+                    keystores.addAll(readMatchingFiles(git.getRepository(), directory, include, projectName));
+                }
+            }
+            log.info("Repository read successfully: {}", projectName);
+        } catch (GitAPIException | IOException e) {
+            log.warn("An error occurred while reading files from the repository {}. {}", repository, e.getMessage());
+        }
+        return keystores;
+    }
+
+    /**
+     * Delete the working directory where the repository passed as argument has been cloned into.
+     *
+     * @param repository Repository previously fetched.
+     */
+    @Override
+    public void release(String repository) {
+        Path directory = getWorkingDirectory(repository);
+        try {
+            if (Files.exists(directory))
+                utils.deleteFolder(directory.toString());
+        } catch (IOException e) {
+            log.warn("An error occurred while cleaning up the repository {}. {}", repository, e.getMessage());
+        }
+    }
+
+    /**
+     * Tree filter walking every folder and keeping the files whose path matches a predicate.
+     */
+    private static class PathPredicateFilter extends TreeFilter {
+        private final Predicate<Path> predicate;
+
+        PathPredicateFilter(Predicate<Path> predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        public boolean include(TreeWalk walker) {
+            return walker.isSubtree() || predicate.test(Paths.get(walker.getPathString()));
+        }
+
+        @Override
+        public boolean shouldBeRecursive() {
+            return true;
+        }
+
+        @Override
+        public TreeFilter clone() {
+            return this;
+        }
+    }
 }
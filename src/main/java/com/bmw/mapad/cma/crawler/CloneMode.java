@@ -0,0 +1,33 @@
+package com.bmw.mapad.cma.crawler;
+
+/**
+ * Different ways available to fetch a repository from a git management platform.
+ */
+public enum CloneMode {
+    /**
+     * Clone all the history and branches of the repository along with a full checkout.
+     */
+    FULL,
+    /**
+     * Clone only the tip of the default branch and write to disk just the files matching the target extensions.
+     */
+    SHALLOW,
+    /**
+     * Keep a bare mirror of the repository across runs, updated by an incremental fetch, and write to disk just the
+     * files matching the target extensions.
+     */
+    MIRROR;
+
+    /**
+     * Convert a string to a clone mode enum.
+     * @param cloneMode Name of the clone mode.
+     * @return A CloneMode enum if the argument matches with some of the modes stored otherwise will return FULL.
+     */
+    public static CloneMode stringToCloneMode(String cloneMode) {
+        switch (cloneMode.trim().toLowerCase()) {
+            case "shallow":return CloneMode.SHALLOW;
+            case "mirror":return CloneMode.MIRROR;
+            default:return CloneMode.FULL;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.bmw.mapad.cma.crawler;
+
+import com.bmw.mapad.cma.entity.KeystoreType;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index persisted across runs holding the modification time, size, type and blob id of every candidate file found in
+ * the scanned folders.
+ */
+@Slf4j
+@Service
+public class FileIndex {
+    @Value("${cma.crawler.filesystem.index.file:filesystem-index.json}")
+    String indexFile;
+
+    private volatile Map<String, Entry> entries;
+
+    /**
+     * Return the entry of a file if it did not change since it was indexed.
+     *
+     * @param file       Path of the file.
+     * @param attributes Current attributes of the file.
+     * @return The entry if the file is unchanged.
+     */
+    public Optional<Entry> lookup(Path file, BasicFileAttributes attributes) {
+        Entry entry = getEntries().get(file.toString());
+        if (entry != null && entry.modified == attributes.lastModifiedTime().toMillis() && entry.size == attributes.size())
+            return Optional.of(entry);
+        return Optional.empty();
+    }
+
+    /**
+     * Index a file.
+     *
+     * @param file       Path of the file.
+     * @param attributes Attributes of the file when it was read.
+     * @param type       Type detected from its content.
+     * @param blobId     Git blob id of its content.
+     */
+    public void put(Path file, BasicFileAttributes attributes, KeystoreType type, String blobId) {
+        Entry entry = new Entry();
+        entry.modified = attributes.lastModifiedTime().toMillis();
+        entry.size = attributes.size();
+        entry.type = type;
+        entry.blobId = blobId;
+        getEntries().put(file.toString(), entry);
+    }
+
+    /**
+     * Drop the entries of the files under a folder that were not found while scanning it.
+     *
+     * @param root  Folder scanned.
+     * @param found Path of the files found.
+     */
+    public void retain(Path root, Set<String> found) {
+        getEntries().keySet().removeIf(file -> Paths.get(file).startsWith(root) && !found.contains(file));
+    }
+
+    /**
+     * Write the index to disk so it can be used by the next run.
+     */
+    public synchronized void save() {
+        try (Writer writer = Files.newBufferedWriter(Paths.get(indexFile))) {
+            new Gson().toJson(getEntries(), writer);
+        } catch (IOException e) {
+            log.error("An error occurred saving the file index {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Return the index entries, loading them from disk on first use. Entries are looked up from several threads.
+     *
+     * @return Entries by path.
+     */
+    private Map<String, Entry> getEntries() {
+        if (entries == null) {
+            synchronized (this) {
+                if (entries == null) {
+                    Map<String, Entry> loaded = new ConcurrentHashMap<>();
+                    Path path = Paths.get(indexFile);
+                    if (Files.exists(path)) {
+                        Type type = new TypeToken<Map<String, Entry>>() {}.getType();
+                        try (Reader reader = Files.newBufferedReader(path)) {
+                            Map<String, Entry> stored = new Gson().fromJson(reader, type);
+                            if (stored != null)
+                                loaded.putAll(stored);
+                        } catch (IOException | JsonParseException e) {
+                            log.warn("File index could not be loaded, starting empty. {}", e.getMessage());
+                        }
+                    }
+                    entries = loaded;
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Attributes of an indexed file.
+     */
+    @Getter
+    public static class Entry {
+        long modified;
+        long size;
+        KeystoreType type;
+        String blobId;
+    }
+}
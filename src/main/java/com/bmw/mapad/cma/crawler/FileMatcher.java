@@ -0,0 +1,111 @@
+package com.bmw.mapad.cma.crawler;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Precompiled matcher for a set of file patterns: file names, suffixes of the path or glob patterns (i.e. *.p12).
+ */
+public class FileMatcher implements Predicate<Path> {
+    private final Set<String> names = new HashSet<>();
+    private final Set<String> suffixes = new HashSet<>();
+    private final int[] suffixLengths;
+    private final List<PathMatcher> nameGlobs = new ArrayList<>();
+    private final List<PathMatcher> pathGlobs = new ArrayList<>();
+
+    private FileMatcher(Collection<String> patterns, boolean exactNames) {
+        for (String pattern : patterns) {
+            String trimmed = pattern.trim();
+            if (trimmed.isEmpty())
+                continue;
+            if (trimmed.matches(".*[*?\\[{].*")) {
+                PathMatcher glob = FileSystems.getDefault().getPathMatcher("glob:" + trimmed);
+                (trimmed.contains("/") ? pathGlobs : nameGlobs).add(glob);
+            } else if (exactNames) {
+                names.add(trimmed);
+            } else {
+                suffixes.add(trimmed);
+            }
+        }
+        suffixLengths = suffixes.stream().mapToInt(String::length).distinct().toArray();
+    }
+
+    /**
+     * Build a matcher where plain patterns must match the end of the path (i.e. jks or cacerts.jks).
+     *
+     * @param patterns Suffixes or globs.
+     * @return The compiled matcher.
+     */
+    public static FileMatcher ofSuffixes(Collection<String> patterns) {
+        return new FileMatcher(patterns, false);
+    }
+
+    /**
+     * Build a matcher where plain patterns must match the whole file name (i.e. node_modules).
+     *
+     * @param patterns File names or globs.
+     * @return The compiled matcher.
+     */
+    public static FileMatcher ofNames(Collection<String> patterns) {
+        return new FileMatcher(patterns, true);
+    }
+
+    /**
+     * Build the matcher of the candidate files: the ones ending with some of the extensions and, if enabled, the ones
+     * without any extension.
+     *
+     * @param extensions    Extensions of the files.
+     * @param extensionless Whether files without extension are candidates too.
+     * @return Matcher of the candidate files.
+     */
+    public static Predicate<Path> ofCandidates(Collection<String> extensions, boolean extensionless) {
+        Predicate<Path> include = ofSuffixes(extensions);
+        if (!extensionless)
+            return include;
+        return include.or(p -> p.getFileName() != null && p.getFileName().toString().indexOf('.') == -1);
+    }
+
+    /**
+     * Check if a path matches with any of the patterns.
+     *
+     * @param path Path to be evaluated.
+     * @return true if some pattern matches otherwise false.
+     */
+    public boolean matches(Path path) {
+        Path fileName = path.getFileName();
+        if (fileName == null)
+            return false;
+        if (names.contains(fileName.toString()))
+            return true;
+        if (suffixLengths.length > 0) {
+            String pathString = path.toString();
+            for (int length : suffixLengths) {
+                if (length <= pathString.length() && suffixes.contains(pathString.substring(pathString.length() - length)))
+                    return true;
+            }
+        }
+        for (PathMatcher glob : nameGlobs) {
+            if (glob.matches(fileName))
+                return true;
+        }
+        for (PathMatcher glob : pathGlobs) {
+            if (glob.matches(path))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Same as {@link #matches(Path)}, so the matcher can be combined with other predicates.
+     *
+     * @param path Path to be evaluated.
+     * @return true if some pattern matches otherwise false.
+     */
+    @Override
+    public boolean test(Path path) {
+        return matches(path);
+    }
+}
@@ -0,0 +1,124 @@
+package com.bmw.mapad.cma.crawler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Service to scan a folder tree looking for files. Subtrees are walked in parallel on a fork-join pool of its own and
+ * folders matching the pruning rules (i.e. .git, node_modules) are never descended into.
+ */
+@Slf4j
+@Service
+public class FileScanner {
+    @Value("${cma.crawler.scanner.prune-dirs:.git,node_modules,target,build}")
+    String[] pruneDirs;
+    @Value("${cma.crawler.scanner.parallelism:4}")
+    int parallelism;
+
+    private ForkJoinPool scanPool;
+
+    /**
+     * Return all the files within a folder tree that match the include patterns and not the exclude patterns.
+     *
+     * @param root    Folder to be scanned.
+     * @param include Patterns the files must match.
+     * @param exclude Patterns the files must not match.
+     * @return Sorted list of the files found.
+     */
+    public List<Path> scan(Path root, Predicate<Path> include, Predicate<Path> exclude) {
+        Queue<Path> found = new ConcurrentLinkedQueue<>();
+        scan(root, include, exclude, found::add);
+        return found.stream()
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Scan a folder tree handing over each file that matches the include patterns and not the exclude patterns as
+     * soon as it is found. The consumer is called from several threads at once.
+     *
+     * @param root    Folder to be scanned.
+     * @param include Patterns the files must match.
+     * @param exclude Patterns the files must not match.
+     * @param onMatch Thread-safe consumer of the files found.
+     */
+    public void scan(Path root, Predicate<Path> include, Predicate<Path> exclude, Consumer<Path> onMatch) {
+        FileMatcher prune = FileMatcher.ofNames(Arrays.asList(pruneDirs));
+        getScanPool().invoke(new ScanTask(root, include, exclude, prune, onMatch));
+    }
+
+    /**
+     * Return the pool scanning the folders, kept apart from the common pool since consumers might block on I/O.
+     */
+    private synchronized ForkJoinPool getScanPool() {
+        if (scanPool == null)
+            scanPool = new ForkJoinPool(Math.max(1, parallelism));
+        return scanPool;
+    }
+
+    /**
+     * Stop the threads of the scan pool.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (scanPool != null)
+            scanPool.shutdownNow();
+    }
+
+    /**
+     * Fork-join task scanning the entries of a single folder and forking a new task for each of its subfolders.
+     */
+    private static class ScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final Predicate<Path> include;
+        private final Predicate<Path> exclude;
+        private final FileMatcher prune;
+        private final Consumer<Path> onMatch;
+
+        ScanTask(Path directory, Predicate<Path> include, Predicate<Path> exclude, FileMatcher prune, Consumer<Path> onMatch) {
+            this.directory = directory;
+            this.include = include;
+            this.exclude = exclude;
+            this.prune = prune;
+            this.onMatch = onMatch;
+        }
+
+        @Override
+        protected void compute() {
+            List<ScanTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isDirectory()) {
+                        if (!prune.matches(entry))
+                            subtasks.add(new ScanTask(entry, include, exclude, prune, onMatch));
+                    } else if ((attributes.isRegularFile() || Files.isRegularFile(entry))
+                            && include.test(entry) && !exclude.test(entry)) {
+                        onMatch.accept(entry);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Folder {} could not be scanned. {}", directory, e.getMessage());
+            }
+            invokeAll(subtasks);
+        }
+    }
+}
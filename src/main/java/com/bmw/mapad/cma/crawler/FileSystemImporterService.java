@@ -0,0 +1,157 @@
+package com.bmw.mapad.cma.crawler;
+
+import com.bmw.mapad.cma.certificateextractor.keystore.ExtractionCache;
+import com.bmw.mapad.cma.credentialsmanagement.CredentialsDatabase;
+import com.bmw.mapad.cma.entity.KeystoreFile;
+import com.bmw.mapad.cma.entity.KeystoreType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Predicate;
+
+/**
+ * Represents a service which enable fetching the files from local folders or mounted volumes (i.e. secret mounts, NFS
+ * exports). Each configured folder is handled as a repository.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+@ConditionalOnProperty(name = "cma.crawler.source", havingValue = "filesystem")
+public class FileSystemImporterService implements FilesImporter {
+    @Value("${cma.crawler.filesystem.roots:}")
+    String[] roots;
+    @Value("${cma.crawler.filesystem.ignore-certs:}")
+    String[] certsToIgnore;
+    @Value("${cma.crawler.scanner.extensionless:false}")
+    boolean extensionless;
+
+    final FileScanner fileScanner;
+    final KeystoreTypeDetector keystoreTypeDetector;
+    final FileIndex fileIndex;
+    final ArchiveScanner archiveScanner;
+    final ExtractionCache extractionCache;
+    final CredentialsDatabase credentialsDatabase;
+
+    /**
+     * Return the folders to be scanned.
+     *
+     * @return List of folders.
+     */
+    @Override
+    public List<String> listRepositories() {
+        List<String> result = new ArrayList<>();
+        for (String root : roots) {
+            if (!root.isBlank())
+                result.add(root.trim());
+        }
+        return result;
+    }
+
+    /**
+     * Scan a folder and retrieve the path of the files matching the set of extensions.
+     *
+     * @param repository Folder to be scanned.
+     * @param extensions Extensions or name of the file to be sought within the folder aforementioned.
+     * @return The collection of path file which matches with extensions aforementioned.
+     */
+    @Override
+    public Map<String, String> collectFiles(String repository, List<String> extensions) {
+        Map<String, String> filesFound = new ConcurrentHashMap<>();
+        fileScanner.scan(Paths.get(repository), FileMatcher.ofSuffixes(extensions),
+                FileMatcher.ofSuffixes(Arrays.asList(certsToIgnore)), p -> filesFound.put(p.toString(), repository));
+        return filesFound;
+    }
+
+    /**
+     * Scan a folder and retrieve the keystore files, handed over with their type and blob id but without content.
+     * Candidates unchanged since the previous run are taken from the file index.
+     *
+     * @param repository Folder to be scanned.
+     * @param extensions Extensions or name of the file to be sought within the folder aforementioned.
+     * @return The keystore files found along with their type and blob id.
+     */
+    @Override
+    public List<KeystoreFile> collectKeystores(String repository, List<String> extensions) {
+        Path root = Paths.get(repository);
+        Queue<KeystoreFile> keystores = new ConcurrentLinkedQueue<>();
+        Set<String> found = ConcurrentHashMap.newKeySet();
+        Predicate<Path> include = FileMatcher.ofCandidates(extensions, extensionless);
+        Predicate<Path> candidates = include.or(archiveScanner::isArchive).or(credentialsDatabase::matches);
+        fileScanner.scan(root, candidates, FileMatcher.ofSuffixes(Arrays.asList(certsToIgnore)), pathFile -> {
+            if (credentialsDatabase.matches(pathFile)) {
+                credentialsDatabase.register(pathFile);
+                if (!include.test(pathFile))
+                    return;
+            }
+            if (archiveScanner.isArchive(pathFile)) {
+                keystores.addAll(archiveScanner.scan(pathFile, repository, include));
+                return;
+            }
+            found.add(pathFile.toString());
+            KeystoreFile keystore = classify(pathFile, repository);
+            if (keystore != null)
+                keystores.add(keystore);
+        });
+        fileIndex.retain(root, found);
+
+        List<KeystoreFile> result = new ArrayList<>(keystores);
+        result.sort(Comparator.comparing(KeystoreFile::getPathFile));
+        log.info("Folder scanned successfully: {}. {} keystores found.", repository, result.size());
+        return result;
+    }
+
+    /**
+     * Classify a candidate file, taking its type and blob id from the file index when it did not change. Blob ids are
+     * computed as in git, so keystores found in folders and in git repositories share the same extraction cache.
+     *
+     * @param pathFile Path of the candidate file.
+     * @param project  Name of the project.
+     * @return The keystore file or null if the file is not a keystore or could not be read.
+     */
+    private KeystoreFile classify(Path pathFile, String project) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(pathFile, BasicFileAttributes.class);
+            Optional<FileIndex.Entry> entry = fileIndex.lookup(pathFile, attributes);
+            KeystoreType type;
+            String blobId;
+            if (entry.isPresent()) {
+                type = entry.get().getType();
+                blobId = entry.get().getBlobId();
+            } else {
+                type = keystoreTypeDetector.detect(pathFile);
+                blobId = type == KeystoreType.UNKNOWN ? null : extractionCache.getBlobId(pathFile);
+                fileIndex.put(pathFile, attributes, type, blobId);
+            }
+            if (type == KeystoreType.UNKNOWN)
+                return null;
+            KeystoreFile keystore = new KeystoreFile(pathFile.toString(), project);
+            keystore.setType(type);
+            keystore.setBlobId(blobId);
+            return keystore;
+        } catch (IOException e) {
+            log.warn("File {} could not be read. {}", pathFile, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Save the file index once the folder has been handled. Files within the folder are never deleted.
+     *
+     * @param repository Folder previously scanned.
+     */
+    @Override
+    public void release(String repository) {
+        fileIndex.save();
+    }
+}
@@ -1,5 +1,7 @@
 package com.bmw.mapad.cma.crawler;
 
+import com.bmw.mapad.cma.entity.KeystoreFile;
+
 import java.util.List;
 import java.util.Map;
 
@@ -10,6 +12,13 @@ import java.util.Map;
  *
  */
 public interface FilesImporter {
+    /**
+     * Retrieve the repositories to be crawled. Depending on the implementation they might be configured by hand,
+     * discovered from the platform or both.
+     * @return List of repositories.
+     */
+    List<String> listRepositories();
+
     /**
      * Retrieve the path of files that matches with the couple of extensions provided by the user. These files are fetched from valid repositories
      * passed as argument.
@@ -18,4 +27,20 @@ public interface FilesImporter {
      * @return List of path files.
      */
     Map<String,String> collectFiles(String repository, List<String> extensions);
+
+    /**
+     * Retrieve the keystore files that matches with the couple of extensions provided by the user. Depending on the
+     * implementation, keystores might be handed over in memory (content and blob id) or just referenced by their path.
+     * @param repository Target repository to fetch the files that match with extensions passed as argument.
+     * @param extensions Set of extensions to filter the files.
+     * @return List of keystore files.
+     */
+    List<KeystoreFile> collectKeystores(String repository, List<String> extensions);
+
+    /**
+     * Release all the local resources (i.e. working directory) allocated while collecting the files of the repository
+     * passed as argument. Files previously returned for this repository might not be available anymore.
+     * @param repository Repository previously fetched.
+     */
+    void release(String repository);
 }
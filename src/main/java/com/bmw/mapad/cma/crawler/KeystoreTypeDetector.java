@@ -0,0 +1,87 @@
+package com.bmw.mapad.cma.crawler;
+
+import com.bmw.mapad.cma.entity.KeystoreType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Service to classify candidate files by sniffing a small header instead of trusting their extension: JKS, JCEKS,
+ * PKCS#12 or PEM.
+ */
+@Slf4j
+@Service
+public class KeystoreTypeDetector {
+    public static final int HEADER_SIZE = 1024;
+    private static final int JKS_MAGIC = 0xFEEDFEED;
+    private static final int JCEKS_MAGIC = 0xCECECECE;
+    private static final byte[] PEM_ARMOUR = "-----BEGIN ".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Detect the type of a file reading only its header.
+     *
+     * @param file Path of the file.
+     * @return The type detected.
+     */
+    public KeystoreType detect(Path file) {
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            return detect(inputStream.readNBytes(HEADER_SIZE));
+        } catch (IOException e) {
+            log.warn("File {} could not be read. {}", file, e.getMessage());
+            return KeystoreType.UNKNOWN;
+        }
+    }
+
+    /**
+     * Detect the type of a content looking only at its header.
+     *
+     * @param content Content or header of the file.
+     * @return The type detected.
+     */
+    public KeystoreType detect(byte[] content) {
+        int length = Math.min(content.length, HEADER_SIZE);
+        if (length >= 4) {
+            int magic = ((content[0] & 0xff) << 24) | ((content[1] & 0xff) << 16)
+                    | ((content[2] & 0xff) << 8) | (content[3] & 0xff);
+            if (magic == JKS_MAGIC)
+                return KeystoreType.JKS;
+            if (magic == JCEKS_MAGIC)
+                return KeystoreType.JCEKS;
+        }
+        if (isPkcs12(content, length))
+            return KeystoreType.PKCS12;
+        if (contains(content, length, PEM_ARMOUR))
+            return KeystoreType.PEM;
+        return KeystoreType.UNKNOWN;
+    }
+
+    /**
+     * Check if the content starts like a PKCS#12 PFX structure: a sequence whose first element is the integer 3.
+     */
+    private boolean isPkcs12(byte[] content, int length) {
+        if (length < 5 || content[0] != 0x30)
+            return false;
+        int lengthOctet = content[1] & 0xff;
+        int offset = lengthOctet > 0x80 ? 2 + (lengthOctet & 0x7f) : 2;
+        return offset + 2 < length && content[offset] == 0x02 && content[offset + 1] == 0x01 && content[offset + 2] == 0x03;
+    }
+
+    /**
+     * Check if the first bytes of the content hold a given sequence of bytes.
+     */
+    private boolean contains(byte[] content, int length, byte[] target) {
+        for (int i = 0; i + target.length <= length; i++) {
+            int j = 0;
+            while (j < target.length && content[i + j] == target[j])
+                j++;
+            if (j == target.length)
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,262 @@
+package com.bmw.mapad.cma.crawler;
+
+import com.bmw.mapad.cma.utils.Utils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.FetchResult;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteConfig;
+import org.eclipse.jgit.transport.URIish;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Local cache of bare mirrors kept across runs. Each mirror is updated by an incremental fetch so only the changes
+ * since the last run are transferred. Once the disk budget is exceeded the least recently used mirrors are deleted.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class MirrorCache {
+    @Value("${cma.crawler.mirror.directory:mirrors}")
+    String directory;
+    @Value("${cma.crawler.mirror.budget:10240}")
+    long budget;
+    final Utils utils;
+
+    private final Map<Path, Object> locks = new ConcurrentHashMap<>();
+    private final Set<Path> usedMirrors = ConcurrentHashMap.newKeySet();
+    private Map<Path, Long> sizes;
+    private long total;
+
+    /**
+     * Bring the mirror of a repository up to date, cloning it first if it does not exist yet.
+     *
+     * @param urlRepo     Url of the repository.
+     * @param name        Relative path of the mirror within the cache directory.
+     * @param credentials Credentials to access the repository.
+     * @return The mirror repository. Callers are responsible for closing it.
+     */
+    public Repository update(String urlRepo, Path name, CredentialsProvider credentials) throws GitAPIException, IOException {
+        Path mirror = Paths.get(directory).resolve(name.toString() + ".git");
+        usedMirrors.add(mirror);
+        synchronized (locks.computeIfAbsent(mirror, key -> new Object())) {
+            fetchMirror(urlRepo, mirror, credentials);
+            Files.setLastModifiedTime(mirror, FileTime.from(Instant.now()));
+        }
+        reclaimSpace(mirror, getSize(mirror));
+        return new FileRepositoryBuilder()
+                .setGitDir(mirror.toFile())
+                .setMustExist(true)
+                .build();
+    }
+
+    /**
+     * Fetch the changes of an existing mirror or clone a new one. Mirrors which are not valid repositories any more
+     * are deleted and cloned again.
+     *
+     * @param urlRepo     Url of the repository.
+     * @param mirror      Path of the mirror.
+     * @param credentials Credentials to access the repository.
+     */
+    private void fetchMirror(String urlRepo, Path mirror, CredentialsProvider credentials) throws GitAPIException, IOException {
+        if (Files.isDirectory(mirror)) {
+            try (Git git = Git.open(mirror.toFile())) {
+                configure(git.getRepository(), urlRepo);
+                git.fetch()
+                        .setCredentialsProvider(credentials)
+                        .setRemoveDeletedRefs(true)
+                        .call();
+                log.info("Mirror updated successfully: {}", mirror);
+                return;
+            } catch (RepositoryNotFoundException e) {
+                log.warn("Invalid mirror {} will be cloned again.", mirror);
+                utils.deleteFolder(mirror.toString());
+            }
+        }
+        cloneMirror(urlRepo, mirror, credentials);
+    }
+
+    /**
+     * Create a bare mirror of a repository. The mirror is initialised and configured before the first fetch, as a
+     * clone would run its automatic gc in the background and might still hold the mirror while it is deleted.
+     *
+     * @param urlRepo     Url of the repository.
+     * @param mirror      Path of the mirror.
+     * @param credentials Credentials to access the repository.
+     */
+    private void cloneMirror(String urlRepo, Path mirror, CredentialsProvider credentials) throws GitAPIException, IOException {
+        try (Git git = Git.init().setBare(true).setDirectory(mirror.toFile()).call()) {
+            Repository repository = git.getRepository();
+            configure(repository, urlRepo);
+
+            FetchResult result = git.fetch()
+                    .setCredentialsProvider(credentials)
+                    .setRemoveDeletedRefs(true)
+                    .call();
+            String branch = getDefaultBranch(result);
+            if (branch != null) {
+                RefUpdate head = repository.updateRef(Constants.HEAD);
+                head.disableRefLog();
+                head.link(branch);
+            }
+            log.info("Mirror created successfully: {}", mirror);
+        }
+    }
+
+    /**
+     * Return the branch the remote HEAD points to, either advertised as symbolic reference or matched by commit.
+     *
+     * @param result Result of the fetch.
+     * @return Name of the branch or null when the remote has no HEAD.
+     */
+    private String getDefaultBranch(FetchResult result) {
+        Ref head = result.getAdvertisedRef(Constants.HEAD);
+        if (head == null || head.getObjectId() == null)
+            return null;
+        if (head.isSymbolic())
+            return head.getTarget().getName();
+        return result.getAdvertisedRefs().stream()
+                .filter(ref -> ref.getName().startsWith(Constants.R_HEADS))
+                .filter(ref -> head.getObjectId().equals(ref.getObjectId()))
+                .map(Ref::getName)
+                .min(Comparator.comparing(name -> !name.equals(Constants.R_HEADS + Constants.MASTER)))
+                .orElse(null);
+    }
+
+    /**
+     * Configure the remote of a mirror to fetch only branches and tags, so pull requests and other hidden refs are
+     * left out, and run the automatic gc of fetches in the foreground so the mirror can be evicted once handed over.
+     *
+     * @param repository Mirror repository.
+     * @param urlRepo    Url of the repository.
+     */
+    private void configure(Repository repository, String urlRepo) throws IOException {
+        StoredConfig config = repository.getConfig();
+        try {
+            RemoteConfig remote = new RemoteConfig(config, Constants.DEFAULT_REMOTE_NAME);
+            new ArrayList<>(remote.getURIs()).forEach(remote::removeURI);
+            remote.addURI(new URIish(urlRepo));
+            remote.setFetchRefSpecs(List.of(
+                    new RefSpec("+" + Constants.R_HEADS + "*:" + Constants.R_HEADS + "*"),
+                    new RefSpec("+" + Constants.R_TAGS + "*:" + Constants.R_TAGS + "*")));
+            remote.setMirror(true);
+            remote.update(config);
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid repository url " + urlRepo, e);
+        }
+        config.setBoolean(ConfigConstants.CONFIG_GC_SECTION, null, ConfigConstants.CONFIG_KEY_AUTODETACH, false);
+        config.save();
+    }
+
+    /**
+     * Delete the least recently used mirrors until the cache fits again within the disk budget (in MB). Mirrors used
+     * during this run are never deleted. The cache is sized once per run, then only the mirror updated is sized again.
+     *
+     * @param updated Mirror just updated.
+     * @param size    Size in bytes of the mirror updated.
+     */
+    synchronized void reclaimSpace(Path updated, long size) throws IOException {
+        if (sizes == null) {
+            sizes = new HashMap<>();
+            for (Path mirror : listMirrors())
+                sizes.put(mirror, getSize(mirror));
+            total = sizes.values().stream().mapToLong(Long::longValue).sum();
+        }
+        Long previous = sizes.put(updated, size);
+        total += size - (previous != null ? previous : 0);
+
+        long limit = budget * 1024 * 1024;
+        if (total <= limit)
+            return;
+        List<Path> mirrors = sizes.keySet().stream()
+                .filter(mirror -> !usedMirrors.contains(mirror))
+                .sorted(Comparator.comparing(this::getLastUsed))
+                .collect(Collectors.toList());
+        for (Path mirror : mirrors) {
+            if (total <= limit)
+                break;
+            utils.deleteFolder(mirror.toString());
+            total -= sizes.remove(mirror);
+            log.info("Mirror {} evicted to reclaim disk space.", mirror);
+        }
+        if (total > limit)
+            log.warn("Mirrors used in this run exceed the disk budget of {} MB.", budget);
+    }
+
+    /**
+     * Return every mirror of the cache, at any depth within the cache directory.
+     *
+     * @return Paths of the mirrors.
+     */
+    private List<Path> listMirrors() throws IOException {
+        Path root = Paths.get(directory);
+        List<Path> mirrors = new ArrayList<>();
+        if (!Files.isDirectory(root))
+            return mirrors;
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.getFileName().toString().endsWith(".git"))
+                    return FileVisitResult.CONTINUE;
+                mirrors.add(dir);
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+        });
+        return mirrors;
+    }
+
+    /**
+     * Return the last time a mirror has been used.
+     *
+     * @param mirror Path of the mirror.
+     * @return Last modified time of the mirror folder.
+     */
+    private FileTime getLastUsed(Path mirror) {
+        try {
+            return Files.getLastModifiedTime(mirror);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Return the disk space used by a mirror.
+     *
+     * @param mirror Path of the mirror.
+     * @return Size in bytes.
+     */
+    private long getSize(Path mirror) throws IOException {
+        try (Stream<Path> walk = Files.walk(mirror)) {
+            return walk.filter(Files::isRegularFile)
+                    .mapToLong(p -> p.toFile().length())
+                    .sum();
+        }
+    }
+}
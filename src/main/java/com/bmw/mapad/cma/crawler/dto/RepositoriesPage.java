@@ -0,0 +1,59 @@
+package com.bmw.mapad.cma.crawler.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class to store one page of repositories retrieved by Bitbucket API response.
+ */
+@Data
+public class RepositoriesPage {
+    public int size;
+    public int limit;
+    public int start;
+    public boolean isLastPage;
+    public Integer nextPageStart;
+    public ArrayList<Repository> values;
+
+    @Data
+    public static class Repository {
+        public String slug;
+        public String name;
+        public boolean archived;
+        public Links links;
+    }
+
+    @Data
+    public static class Links {
+        public ArrayList<Link> clone;
+    }
+
+    @Data
+    public static class Link {
+        public String href;
+        public String name;
+    }
+
+    /**
+     * Return the http clone url of each repository of the page, without the user information Bitbucket adds to them.
+     * Archived repositories are left out.
+     *
+     * @return List of clone urls.
+     */
+    public List<String> mapToCloneUrls() {
+        List<String> urls = new ArrayList<>();
+        if (values == null)
+            return urls;
+        for (Repository repository : values) {
+            if (repository.archived || repository.links == null || repository.links.clone == null)
+                continue;
+            repository.links.clone.stream()
+                    .filter(link -> "http".equals(link.name) && link.href != null)
+                    .findFirst()
+                    .ifPresent(link -> urls.add(link.href.replaceFirst("://[^/@]+@", "://")));
+        }
+        return urls;
+    }
+}
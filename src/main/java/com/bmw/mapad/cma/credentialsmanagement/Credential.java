@@ -0,0 +1,40 @@
+package com.bmw.mapad.cma.credentialsmanagement;
+
+import lombok.Data;
+import lombok.ToString;
+
+import java.util.Arrays;
+
+/**
+ * This class represents a credential from a credentials repository: the reference of its entry along with its password,
+ * held in a char array so it can be wiped once not needed.
+ */
+@Data
+public class Credential {
+    private final String entry;
+    @ToString.Exclude
+    private final char[] password;
+
+    public Credential(String entry, char[] password) {
+        this.entry = entry;
+        this.password = password;
+    }
+
+    public Credential(String entry, String password) {
+        this(entry, password.toCharArray());
+    }
+
+    /**
+     * Return a credential holding a copy of this password, so each one can be wiped on its own.
+     */
+    public Credential copy() {
+        return new Credential(entry, password.clone());
+    }
+
+    /**
+     * Overwrite the password with zeros.
+     */
+    public void wipe() {
+        Arrays.fill(password, '\0');
+    }
+}
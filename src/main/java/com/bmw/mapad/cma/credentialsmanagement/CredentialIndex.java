@@ -0,0 +1,77 @@
+package com.bmw.mapad.cma.credentialsmanagement;
+
+import java.util.*;
+
+/**
+ * In memory inverted index over the path of the credential entries, ranking them by the tokens they share with a
+ * keystore weighted by their inverse document frequency.
+ */
+public class CredentialIndex {
+    private final List<String> entries;
+    private final Map<String, int[]> postings;
+
+    /**
+     * Build the index of the entries passed as argument.
+     *
+     * @param entries Path of the entries, following the order of the database.
+     */
+    public CredentialIndex(Collection<String> entries) {
+        this.entries = new ArrayList<>(entries);
+        Map<String, List<Integer>> tokens = new HashMap<>();
+        for (int i = 0; i < this.entries.size(); i++) {
+            for (String token : tokenize(this.entries.get(i)))
+                tokens.computeIfAbsent(token, t -> new ArrayList<>()).add(i);
+        }
+        postings = new HashMap<>();
+        tokens.forEach((token, ids) -> postings.put(token, ids.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    /**
+     * Return the entries sharing at least one token with the texts passed as argument, from the best to the worst
+     * ranked. Entries ranked the same follow the order of the database.
+     *
+     * @param limit Maximum number of entries returned.
+     * @param texts Texts the query is made of (i.e. repository and path of the keystore).
+     * @return The path of the entries.
+     */
+    public List<String> search(int limit, String... texts) {
+        Set<String> query = new LinkedHashSet<>();
+        for (String text : texts) {
+            if (text != null)
+                query.addAll(tokenize(text));
+        }
+        double[] scores = new double[entries.size()];
+        for (String token : query) {
+            int[] ids = postings.get(token);
+            if (ids == null)
+                continue;
+            double weight = Math.log(1 + (double) entries.size() / ids.length);
+            for (int id : ids)
+                scores[id] += weight;
+        }
+
+        List<Integer> ranked = new ArrayList<>();
+        for (int i = 0; i < scores.length; i++) {
+            if (scores[i] > 0)
+                ranked.add(i);
+        }
+        ranked.sort(Comparator.comparingDouble((Integer i) -> -scores[i]).thenComparingInt(i -> i));
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < ranked.size() && i < limit; i++)
+            result.add(entries.get(ranked.get(i)));
+        return result;
+    }
+
+    /**
+     * Split a text into lower case alphanumeric tokens, so paths, titles and file names share the same vocabulary
+     * (i.e. /Payments/Server-Keystore and payments/server.keystore.jks).
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{Alnum}]+")) {
+            if (!token.isEmpty())
+                tokens.add(token);
+        }
+        return tokens;
+    }
+}
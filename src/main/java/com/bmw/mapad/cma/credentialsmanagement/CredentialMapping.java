@@ -0,0 +1,113 @@
+package com.bmw.mapad.cma.credentialsmanagement;
+
+import com.bmw.mapad.cma.entity.KeystoreFile;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mapping persisted across runs between keystores, identified by their blob id and by their location, and the
+ * credential entry which unlocked them last time. Passwords are never stored.
+ */
+@Slf4j
+@Service
+public class CredentialMapping {
+    @Value("${cma.crawler.bitbucket.credentials.mapping.file:credentials-mapping.json}")
+    String mappingFile;
+
+    private volatile Mappings mappings;
+
+    /**
+     * Return the reference of the entry which unlocked the keystore last time. The content is looked up first, then
+     * the location.
+     *
+     * @param keystoreFile Keystore file to be unlocked.
+     * @return The reference of the entry if known.
+     */
+    public Optional<String> lookup(KeystoreFile keystoreFile) {
+        Mappings current = getMappings();
+        String entry = keystoreFile.getBlobId() != null ? current.byContent.get(keystoreFile.getBlobId()) : null;
+        if (entry == null)
+            entry = current.byLocation.get(getLocation(keystoreFile));
+        return Optional.ofNullable(entry);
+    }
+
+    /**
+     * Remember the entry which unlocked a keystore.
+     *
+     * @param keystoreFile Keystore file unlocked.
+     * @param entry        Reference of the entry.
+     */
+    public void remember(KeystoreFile keystoreFile, String entry) {
+        if (entry == null)
+            return;
+        Mappings current = getMappings();
+        if (keystoreFile.getBlobId() != null)
+            current.byContent.put(keystoreFile.getBlobId(), entry);
+        current.byLocation.put(getLocation(keystoreFile), entry);
+    }
+
+    /**
+     * Write the mapping to disk so it can be used by the next run.
+     */
+    public synchronized void save() {
+        try (Writer writer = Files.newBufferedWriter(Paths.get(mappingFile))) {
+            new Gson().toJson(getMappings(), writer);
+        } catch (IOException e) {
+            log.error("An error occurred saving the credentials mapping {}", e.getMessage());
+        }
+    }
+
+    private String getLocation(KeystoreFile keystoreFile) {
+        return keystoreFile.getProject() + ":" + keystoreFile.getPathFile();
+    }
+
+    /**
+     * Return the mappings, loading them from disk on first use. Keystores are unlocked from several threads.
+     *
+     * @return Mappings by content and by location.
+     */
+    private Mappings getMappings() {
+        if (mappings == null) {
+            synchronized (this) {
+                if (mappings == null) {
+                    Mappings loaded = new Mappings();
+                    Path path = Paths.get(mappingFile);
+                    if (Files.exists(path)) {
+                        try (Reader reader = Files.newBufferedReader(path)) {
+                            Mappings stored = new Gson().fromJson(reader, Mappings.class);
+                            if (stored != null && stored.byContent != null)
+                                loaded.byContent.putAll(stored.byContent);
+                            if (stored != null && stored.byLocation != null)
+                                loaded.byLocation.putAll(stored.byLocation);
+                        } catch (IOException | JsonParseException e) {
+                            log.warn("Credentials mapping could not be loaded, starting empty. {}", e.getMessage());
+                        }
+                    }
+                    mappings = loaded;
+                }
+            }
+        }
+        return mappings;
+    }
+
+    /**
+     * References of the entries by blob id and by location of the keystores.
+     */
+    private static class Mappings {
+        Map<String, String> byContent = new ConcurrentHashMap<>();
+        Map<String, String> byLocation = new ConcurrentHashMap<>();
+    }
+}
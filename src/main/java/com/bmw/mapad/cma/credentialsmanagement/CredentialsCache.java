@@ -0,0 +1,150 @@
+package com.bmw.mapad.cma.credentialsmanagement;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Cache shared by the credentials managers holding the entries located per keyword and the credentials read per entry.
+ * Passwords are wiped once evicted, either expired or least recently used.
+ */
+@Slf4j
+public class CredentialsCache {
+    private final long timeToLive;
+    private final Lookups<List<String>> located;
+    private final Lookups<Credential> credentials;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param timeToLive Seconds a lookup is kept, or 0 to expire them immediately.
+     * @param maxEntries Maximum number of keywords, and of credentials, kept.
+     */
+    public CredentialsCache(long timeToLive, int maxEntries) {
+        this.timeToLive = TimeUnit.SECONDS.toNanos(timeToLive);
+        this.located = new Lookups<>(maxEntries, entries -> { });
+        this.credentials = new Lookups<>(maxEntries, Credential::wipe);
+    }
+
+    /**
+     * Return the entries located by a keyword, unless not cached or expired.
+     *
+     * @param keyword Keyword of a keystore.
+     * @return Path of the entries.
+     */
+    public synchronized Optional<List<String>> getLocated(String keyword) {
+        return get(located, keyword);
+    }
+
+    /**
+     * Cache the entries located by a keyword.
+     *
+     * @param keyword Keyword of a keystore.
+     * @param entries Path of the entries.
+     */
+    public synchronized void putLocated(String keyword, List<String> entries) {
+        put(located, keyword, List.copyOf(entries));
+    }
+
+    /**
+     * Return a copy of the credential held by an entry, unless not cached or expired.
+     *
+     * @param entry Path of the entry.
+     * @return A copy of the credential.
+     */
+    public synchronized Optional<Credential> getCredential(String entry) {
+        return get(credentials, entry).map(Credential::copy);
+    }
+
+    /**
+     * Cache a credential, taking ownership of its password, and return a copy of it.
+     *
+     * @param credential Credential read from the database.
+     * @return A copy of the credential.
+     */
+    public synchronized Credential putCredential(Credential credential) {
+        Credential copy = credential.copy();
+        put(credentials, credential.getEntry(), credential);
+        return copy;
+    }
+
+    /**
+     * Wipe every password held and empty the cache.
+     */
+    public synchronized void clear() {
+        log.info("Credentials cache: {} hits, {} misses.", hits.get(), misses.get());
+        located.clear();
+        credentials.clear();
+    }
+
+    private <V> Optional<V> get(Lookups<V> lookups, String key) {
+        Lookup<V> lookup = lookups.get(key);
+        if (lookup != null && System.nanoTime() - lookup.created >= timeToLive) {
+            lookups.remove(key);
+            lookups.onEviction.accept(lookup.value);
+            lookup = null;
+        }
+        if (lookup == null) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        hits.incrementAndGet();
+        return Optional.of(lookup.value);
+    }
+
+    private <V> void put(Lookups<V> lookups, String key, V value) {
+        if (timeToLive <= 0) {
+            lookups.onEviction.accept(value);
+            return;
+        }
+        Lookup<V> former = lookups.put(key, new Lookup<>(value, System.nanoTime()));
+        if (former != null && former.value != value)
+            lookups.onEviction.accept(former.value);
+    }
+
+    /**
+     * Lookups kept in access order, the eldest being evicted once the maximum size is exceeded.
+     */
+    private static class Lookups<V> extends LinkedHashMap<String, Lookup<V>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+        private final transient Consumer<V> onEviction;
+
+        Lookups(int maxEntries, Consumer<V> onEviction) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+            this.onEviction = onEviction;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Lookup<V>> eldest) {
+            if (size() <= maxEntries)
+                return false;
+            onEviction.accept(eldest.getValue().value);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            values().forEach(lookup -> onEviction.accept(lookup.value));
+            super.clear();
+        }
+    }
+
+    /**
+     * Value of a lookup along with the time it was cached.
+     */
+    private static class Lookup<V> {
+        private final V value;
+        private final long created;
+
+        Lookup(V value, long created) {
+            this.value = value;
+            this.created = created;
+        }
+    }
+}
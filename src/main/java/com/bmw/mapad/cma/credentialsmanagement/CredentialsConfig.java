@@ -0,0 +1,25 @@
+package com.bmw.mapad.cma.credentialsmanagement;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration class of the cache shared by the credentials managers (keepass or kdbx).
+ */
+@Configuration
+public class CredentialsConfig {
+    @Value("${cma.crawler.bitbucket.credentials.cache.ttl:600}")
+    long timeToLive;
+    @Value("${cma.crawler.bitbucket.credentials.cache.size:1000}")
+    int maxEntries;
+
+    /**
+     * Return the cache of the entries located per keyword and of the credentials read per entry.
+     * @return Credentials cache.
+     */
+    @Bean(destroyMethod = "clear")
+    public CredentialsCache credentialsCache() {
+        return new CredentialsCache(timeToLive, maxEntries);
+    }
+}
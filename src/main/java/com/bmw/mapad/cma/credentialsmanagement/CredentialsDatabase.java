@@ -0,0 +1,71 @@
+package com.bmw.mapad.cma.credentialsmanagement;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * Service locating the database file holding the credentials (i.e. a keepass .kdbx file), either at the path
+ * configured or registered by the importers as they index the files of the repositories.
+ */
+@Slf4j
+@Service
+public class CredentialsDatabase {
+    @Value("${cma.crawler.bitbucket.credentials.file:}")
+    String pathFile;
+
+    private volatile Path database;
+
+    /**
+     * Check if a file is the credentials database, comparing whole path segments.
+     *
+     * @param file Path of the file.
+     * @return true if it is the credentials database otherwise false.
+     */
+    public boolean matches(Path file) {
+        return !pathFile.isEmpty() && file.endsWith(pathFile);
+    }
+
+    /**
+     * Register the credentials database found in a repository. Only the first one is kept, as a copy which outlives
+     * the working directory of its repository.
+     *
+     * @param file Path of the database file found.
+     */
+    public void register(Path file) {
+        if (database != null)
+            return;
+        synchronized (this) {
+            if (database != null)
+                return;
+            try {
+                Path copy = Files.createTempFile("credentials", ".kdbx");
+                copy.toFile().deleteOnExit();
+                Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+                database = copy;
+                log.info("Keepass file found: {}", file);
+            } catch (IOException e) {
+                log.error("Keepass file {} could not be copied. {}", file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Return the path of the credentials database: the one configured if it exists, otherwise the copy of the one
+     * found in a repository.
+     *
+     * @return The path of the database, or empty if not found yet.
+     */
+    public Optional<Path> locate() {
+        if (!pathFile.isEmpty() && Files.isRegularFile(Paths.get(pathFile)))
+            return Optional.of(Paths.get(pathFile));
+        return Optional.ofNullable(database);
+    }
+}
@@ -1,6 +1,12 @@
 package com.bmw.mapad.cma.credentialsmanagement;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * Interface for credentials manager. Provide an abstraction for manage a credentials repository and
@@ -13,4 +19,47 @@ public interface CredentialsManager {
      * @return The password if exist.
      */
     List<String> findPassword(String targetEntry,String project);
+
+    /**
+     * Same as {@link #findPassword(String, String)} but each candidate password comes along with the reference of the
+     * entry holding it.
+     * @param targetEntry Certificate to be searched in loaded entries from database file.
+     * @return The candidate credentials if exist.
+     */
+    List<Credential> findCredentials(String targetEntry, String project);
+
+    /**
+     * Same as {@link #findCredentials(String, String)} for all the keystores of a repository at once, so managers can
+     * share the lookups common to several keystores. By default each keystore is looked up on its own.
+     * @param targetEntries Certificates to be searched in loaded entries from database file.
+     * @param project Repository which the certificates belong to.
+     * @return The candidate credentials by certificate.
+     */
+    default Map<String, List<Credential>> resolveCredentials(Collection<String> targetEntries, String project) {
+        Map<String, List<Credential>> resolved = new LinkedHashMap<>();
+        for (String targetEntry : targetEntries)
+            resolved.put(targetEntry, findCredentials(targetEntry, project));
+        return resolved;
+    }
+
+    /**
+     * Retrieve a single credential by the reference of its entry.
+     * @param entry Reference of the entry.
+     * @return The credential if the entry still exists.
+     */
+    Optional<Credential> getCredential(String entry);
+
+    /**
+     * Return the keywords used to look for the entries matching a keystore: the parts of its path split by dots and
+     * hyphens, in lower case.
+     * @param targetEntry Path of the keystore.
+     * @return The keywords.
+     */
+    static List<String> getKeywords(String targetEntry) {
+        List<String> keywords = Arrays.stream(targetEntry.split("[.-]"))
+                .map(String::toLowerCase).collect(Collectors.toList());
+        keywords.addAll(Arrays.stream(targetEntry.split("-"))
+                .map(String::toLowerCase).collect(Collectors.toList()));
+        return keywords;
+    }
 }
@@ -0,0 +1,187 @@
+package com.bmw.mapad.cma.credentialsmanagement;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.linguafranca.pwdb.Entry;
+import org.linguafranca.pwdb.Group;
+import org.linguafranca.pwdb.kdbx.KdbxCreds;
+import org.linguafranca.pwdb.kdbx.simple.SimpleDatabase;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * This class stores and exports all the credentials required to unlock keystore files, reading the keepass database
+ * (.kdbx) in process once per run.
+ */
+@Service("kdbx")
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "cma.crawler.bitbucket.credentials", name = "type", havingValue = "kdbx")
+public class KdbxCredentialsService implements CredentialsManager {
+    @Value("${cma.crawler.bitbucket.credentials.pass}")
+    String password;
+    @Value("${cma.crawler.bitbucket.credentials.candidates:20}")
+    int maxCandidates;
+
+    private volatile Map<String, char[]> entries;
+    private volatile CredentialIndex index;
+    private volatile boolean notFoundReported;
+
+    final CredentialsDatabase credentialsDatabase;
+    final CredentialsCache credentialsCache;
+
+    /**
+     * Load all passwords from the keepass database file, once per run. Until located no credential is found, which is
+     * reported once.
+     *
+     * @return Passwords by entry path, following the order of the database.
+     */
+    Map<String, char[]> loadCredentials() {
+        if (entries == null) {
+            synchronized (this) {
+                if (entries == null) {
+                    Optional<Path> dbPathFile = credentialsDatabase.locate();
+                    if (dbPathFile.isEmpty()) {
+                        if (!notFoundReported) {
+                            notFoundReported = true;
+                            log.error("Keepass file not found!");
+                        }
+                        return Collections.emptyMap();
+                    }
+                    Map<String, char[]> loaded = new LinkedHashMap<>();
+                    try {
+                        collectEntries(openDatabase(dbPathFile.get()).getRootGroup(), "", loaded);
+                        log.info("Keepass file loaded: {}. {} entries found.", dbPathFile.get(), loaded.size());
+                    } catch (IOException | IllegalStateException e) {
+                        //IllegalStateException is thrown by KeePassJava2 when the master password is wrong
+                        log.error("Keepass file could not be loaded {}", e.getMessage());
+                    }
+                    index = new CredentialIndex(loaded.keySet());
+                    entries = Collections.unmodifiableMap(loaded);
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Decrypt and parse the keepass database file. The parser of KeePassJava2 declares a bare Exception, thrown by the
+     * XML deserializer on malformed content, which is reported as an IOException.
+     *
+     * @param dbPathFile Path of the database file.
+     * @return The database.
+     */
+    private SimpleDatabase openDatabase(Path dbPathFile) throws IOException {
+        byte[] masterPassword = password.getBytes(StandardCharsets.UTF_8);
+        try (InputStream inputStream = Files.newInputStream(dbPathFile)) {
+            return SimpleDatabase.load(new KdbxCreds(masterPassword), inputStream);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        } finally {
+            Arrays.fill(masterPassword, (byte) 0);
+        }
+    }
+
+    /**
+     * Walk a group of the database collecting the password of its entries and of the entries of its subgroups. The
+     * root group is not part of the paths.
+     */
+    private void collectEntries(Group<?, ?, ?, ?> group, String path, Map<String, char[]> collected) {
+        for (Entry<?, ?, ?, ?> entry : group.getEntries()) {
+            if (entry.getPassword() != null && !entry.getPassword().isEmpty())
+                collected.put(path + "/" + entry.getTitle(), entry.getPassword().toCharArray());
+        }
+        for (Group<?, ?, ?, ?> subgroup : group.getGroups())
+            collectEntries(subgroup, path + "/" + subgroup.getName(), collected);
+    }
+
+    /**
+     * Given the name of certificate the candidate passwords are the ones of the best ranked entries.
+     *
+     * @param targetEntry Certificate to be searched in loaded entries from keepass database file.
+     * @return List of candidate passwords.
+     */
+    @Override
+    public List<String> findPassword(String targetEntry, String project) {
+        List<Credential> credentials = findCredentials(targetEntry, project);
+        List<String> passwords = credentials.stream()
+                .map(credential -> new String(credential.getPassword()))
+                .collect(Collectors.toList());
+        credentials.forEach(Credential::wipe);
+        return passwords;
+    }
+
+    /**
+     * Given the name of certificate the candidate credentials are the entries sharing tokens with the repository and
+     * the path of the keystore, best ranked first, followed by the entries holding one of its keywords in their path.
+     *
+     * @param targetEntry Certificate to be searched in loaded entries from keepass database file.
+     * @param project     Repository which the certificate belongs to.
+     * @return List of candidate credentials.
+     */
+    @Override
+    public List<Credential> findCredentials(String targetEntry, String project) {
+        Map<String, char[]> credentials = loadCredentials();
+        if (credentials.isEmpty())
+            return new ArrayList<>();
+        Set<String> candidates = new LinkedHashSet<>(index.search(maxCandidates, project, targetEntry));
+        candidates.addAll(locate(credentials.keySet(), targetEntry));
+        return candidates.stream()
+                .limit(maxCandidates)
+                .map(entry -> new Credential(entry, credentials.get(entry).clone()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Return the entries whose path contains any of the keywords of a keystore, ignoring case. The entries located by
+     * each keyword are taken from the credentials cache unless not cached yet.
+     */
+    private List<String> locate(Collection<String> entries, String targetEntry) {
+        Set<String> located = new LinkedHashSet<>();
+        CredentialsManager.getKeywords(targetEntry).stream()
+                .filter(keyword -> !keyword.isBlank())
+                .distinct()
+                .forEach(keyword -> located.addAll(credentialsCache.getLocated(keyword).orElseGet(() -> {
+                    List<String> matching = entries.stream()
+                            .filter(entry -> entry.toLowerCase(Locale.ROOT).contains(keyword))
+                            .collect(Collectors.toList());
+                    credentialsCache.putLocated(keyword, matching);
+                    return matching;
+                })));
+        return new ArrayList<>(located);
+    }
+
+    /**
+     * Retrieve the credential held by a keepass entry.
+     *
+     * @param entry Path of the keepass entry.
+     * @return The credential if the entry still exists.
+     */
+    @Override
+    public Optional<Credential> getCredential(String entry) {
+        return Optional.ofNullable(loadCredentials().get(entry))
+                .map(password -> new Credential(entry, password.clone()));
+    }
+
+    /**
+     * Wipe every password held, so they do not outlive the run.
+     */
+    @PreDestroy
+    public synchronized void clear() {
+        if (entries != null)
+            entries.values().forEach(password -> Arrays.fill(password, '\0'));
+    }
+}
@@ -1,7 +1,6 @@
 package com.bmw.mapad.cma.credentialsmanagement;
 
 
-import com.bmw.mapad.cma.utils.Utils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,80 +11,73 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * This class stores and exports all the credentials required to unlock keystore files.
- * The file must have .kdbx extension which is associated a one specific keepass database archive.
+ * The file must have .kdbx extension which is associated a one specific keepass database archive. It is located by
+ * the credentials database service and read through keepassxc-cli.
  */
 @Service("Keepass")
 @Slf4j
 @ConditionalOnProperty(prefix = "cma.crawler.bitbucket.credentials", name = "type", havingValue = "keepass")
 @RequiredArgsConstructor
 public class KeepassCredentialsService implements CredentialsManager {
-    public static final String FOLDER_NAME = "projects";
-    @Value("${cma.crawler.bitbucket.credentials.file}")
-    private String pathFile;
     @Value("${cma.crawler.bitbucket.credentials.pass}")
     private String password;
-    final Utils utils;
-    Boolean loaded = false;
+    @Value("${cma.crawler.bitbucket.credentials.candidates:20}")
+    int maxCandidates;
+    @Value("${cma.crawler.bitbucket.credentials.lookup-threads:4}")
+    int lookupThreads;
+    final CredentialsDatabase credentialsDatabase;
+    final CredentialsCache credentialsCache;
+
+    private volatile Path database;
+    private volatile boolean notFoundReported;
 
     /**
-     * Load all passwords from a keepass database file. Keepass database file provide a secure way to store a set of passwords.
-     * KeePass database file is encrypted using a master key.
+     * Return the keepass database file. Keepass database file provide a secure way to store a set of passwords,
+     * encrypted using a master key. Until located no credential can be looked up, which is reported once.
      *
-     * @param file Path for the database file.
+     * @return Path of the database file, or empty if not found yet.
      */
-    public void loadCredentials(String file) {
-        if (!loaded) {
-            loaded = true;
-            Optional<String> dbPathFile = Optional.empty();
-            try (Stream<Path> walk = Files.walk(Paths.get(FOLDER_NAME))) {
-                dbPathFile = walk.filter(p -> !Files.isDirectory(p))
-                        .map(Path::toString)
-                        .filter(f -> utils.isEndWith(f, List.of(file)))
-                        .findFirst();
-            } catch (IOException e) {
-                log.error("An error occurred loading credentials {}", e.getMessage());
+    Optional<Path> loadCredentials() {
+        Path current = database;
+        if (current == null) {
+            synchronized (this) {
+                if (database == null)
+                    database = credentialsDatabase.locate().orElse(null);
+                current = database;
             }
-
-            if(dbPathFile.isPresent()){
-                ProcessBuilder builder = new ProcessBuilder();
-                builder.command("sh", "-c", String.format("mv %s .",dbPathFile.get()));
-                try {
-                    Process process = builder.start();
-                    log.info("Result code: {}", process.waitFor());
-                } catch (IOException | InterruptedException e) {
-                    log.error("{}",e.getMessage());
-                }
-                log.info("Keepass file found: {}",dbPathFile.get());
-            }else{
+            if (current == null && !notFoundReported) {
+                notFoundReported = true;
                 log.error("Keepass file not found!");
             }
         }
+        return Optional.ofNullable(current);
     }
 
     /**
      * This method allow performing operations over keepass-cli dependency. This dependency provides several commands
-     * to handle with keepass files.
+     * to handle with keepass files. Arguments are passed as they are, without going through a shell.
      * @param command Desired command to call some operation from keepass-cli dependency.
      * @param entry Keystore keyword(s) to looking for into Keepass file,
      * @return Process builder to execute.
      */
     ProcessBuilder makeProcessBuilder(String command, String entry) {
-        ProcessBuilder builder = new ProcessBuilder();
-        Map<String, String> instructionMap = Map.ofEntries(
-                new AbstractMap.SimpleEntry<>("show", "show -s"),
-                new AbstractMap.SimpleEntry<>("locate", "locate"));
-        String instruction = String.format("keepassxc-cli %s %s '%s'", instructionMap.get(command), pathFile, entry);
-        builder.command("sh", "-c", instruction);
-        return builder;
+        String pathFile = database != null ? database.toString() : "";
+        List<String> instruction = new ArrayList<>(List.of("keepassxc-cli", command));
+        if (command.equals("show"))
+            instruction.add("-s");
+        instruction.add(pathFile);
+        instruction.add(entry);
+        return new ProcessBuilder(instruction);
     }
 
     /**
@@ -124,30 +116,171 @@ public class KeepassCredentialsService implements CredentialsManager {
      */
     @Override
     public List<String> findPassword(String targetEntry, String project) {
-        loadCredentials(pathFile);
-        List<String> possibilities = new ArrayList<>();
-        List<String> keywordsFromCertAndProject = Arrays.stream(targetEntry.split("[.-]"))
-                .map(String::toLowerCase).collect(Collectors.toList());
-        keywordsFromCertAndProject.addAll(Arrays.stream(targetEntry.split("-"))
-                .map(String::toLowerCase).collect(Collectors.toList()));
-
-        List<String> entries = new ArrayList<>();
+        return findCredentials(targetEntry, project).stream()
+                .map(credential -> new String(credential.getPassword()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Given the name of certificate is performed a set of operations to map the credentials from a keepass file with
+     * the target keystore. Only the best ranked entries located, up to the maximum number of candidates, are read.
+     *
+     * @param targetEntry Certificate to be searched in loaded entries from keepass database file.
+     * @param project     Repository which the certificate belongs to.
+     * @return List of candidate credentials.
+     */
+    @Override
+    public List<Credential> findCredentials(String targetEntry, String project) {
+        List<Credential> possibilities = new ArrayList<>();
+        if (loadCredentials().isEmpty())
+            return possibilities;
+        List<String> keywordsFromCertAndProject = CredentialsManager.getKeywords(targetEntry);
+
+        Set<String> entries = new LinkedHashSet<>();
         try {
-            for (String keyword : keywordsFromCertAndProject) {
-                List<String> results = getAllCredentialsByKeyword("locate", keyword);
-                for (String entry : results) {
-                    if (!entries.contains(entry)) {
-                        entries.add(entry);
-                    }
+            for (String keyword : keywordsFromCertAndProject)
+                entries.addAll(locate(keyword));
+            for (String entry : rank(entries, targetEntry, project))
+                read(entry).ifPresent(possibilities::add);
+        } catch (IOException e) {
+            log.error(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Credentials lookup has been interrupted.");
+        }
+        return possibilities;
+    }
+
+    /**
+     * Return the entries located by a keyword, taken from the credentials cache unless not cached yet.
+     */
+    private List<String> locate(String keyword) throws IOException, InterruptedException {
+        Optional<List<String>> cached = credentialsCache.getLocated(keyword);
+        if (cached.isPresent())
+            return cached.get();
+        List<String> located = getAllCredentialsByKeyword("locate", keyword);
+        credentialsCache.putLocated(keyword, located);
+        return located;
+    }
+
+    /**
+     * Return a copy of the credential held by an entry, taken from the credentials cache unless not cached yet.
+     */
+    private Optional<Credential> read(String entry) throws IOException, InterruptedException {
+        Optional<Credential> cached = credentialsCache.getCredential(entry);
+        if (cached.isPresent())
+            return cached;
+        return getAllCredentialsByKeyword("show", entry).stream()
+                .findFirst()
+                .map(password -> credentialsCache.putCredential(new Credential(entry, password)));
+    }
+
+    /**
+     * Resolve the candidate credentials of several keystores in one pass. Keywords shared by the keystores are
+     * located once and entries shared by their candidates are read once, both running concurrently unless cached.
+     *
+     * @param targetEntries Certificates to be searched in loaded entries from keepass database file.
+     * @param project       Repository which the certificates belong to.
+     * @return The candidate credentials by certificate.
+     */
+    @Override
+    public Map<String, List<Credential>> resolveCredentials(Collection<String> targetEntries, String project) {
+        if (loadCredentials().isEmpty())
+            return new LinkedHashMap<>();
+        Map<String, List<String>> keywords = new LinkedHashMap<>();
+        for (String targetEntry : targetEntries)
+            keywords.put(targetEntry, CredentialsManager.getKeywords(targetEntry));
+        Map<String, List<String>> located = new HashMap<>();
+        Set<String> pendingKeywords = new LinkedHashSet<>();
+        keywords.values().stream().flatMap(List::stream).distinct().forEach(keyword -> credentialsCache.getLocated(keyword)
+                .ifPresentOrElse(entries -> located.put(keyword, entries), () -> pendingKeywords.add(keyword)));
+        runConcurrently("locate", pendingKeywords).forEach((keyword, entries) -> {
+            credentialsCache.putLocated(keyword, entries);
+            located.put(keyword, entries);
+        });
+
+        Map<String, List<String>> candidates = new LinkedHashMap<>();
+        keywords.forEach((targetEntry, targetKeywords) -> {
+            Set<String> entries = new LinkedHashSet<>();
+            targetKeywords.forEach(keyword -> entries.addAll(located.getOrDefault(keyword, List.of())));
+            candidates.put(targetEntry, rank(entries, targetEntry, project));
+        });
+        Map<String, Credential> read = new HashMap<>();
+        Set<String> pendingEntries = new LinkedHashSet<>();
+        candidates.values().stream().flatMap(List::stream).distinct().forEach(entry -> credentialsCache.getCredential(entry)
+                .ifPresentOrElse(credential -> read.put(entry, credential), () -> pendingEntries.add(entry)));
+        runConcurrently("show", pendingEntries).forEach((entry, passwords) -> passwords.stream()
+                .findFirst()
+                .ifPresent(password -> read.put(entry, credentialsCache.putCredential(new Credential(entry, password)))));
+
+        Map<String, List<Credential>> resolved = new LinkedHashMap<>();
+        candidates.forEach((targetEntry, entries) -> resolved.put(targetEntry, entries.stream()
+                .filter(read::containsKey)
+                .map(entry -> read.get(entry).copy())
+                .collect(Collectors.toList())));
+        read.values().forEach(Credential::wipe);
+        return resolved;
+    }
+
+    /**
+     * Run a keepass-cli command for each argument concurrently, each one in its own process.
+     *
+     * @return The lines returned by the command by argument. Arguments whose command failed are left out.
+     */
+    private Map<String, List<String>> runConcurrently(String command, Set<String> arguments) {
+        Map<String, List<String>> results = new HashMap<>();
+        if (arguments.isEmpty())
+            return results;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(lookupThreads, arguments.size())));
+        try {
+            Map<String, Future<List<String>>> futures = new LinkedHashMap<>();
+            for (String argument : arguments)
+                futures.put(argument, pool.submit(() -> getAllCredentialsByKeyword(command, argument)));
+            for (Map.Entry<String, Future<List<String>>> future : futures.entrySet()) {
+                try {
+                    results.put(future.getKey(), future.getValue().get());
+                } catch (ExecutionException e) {
+                    log.error(e.getCause().getMessage());
                 }
             }
-            for (String entry : entries) {
-                List<String> pass = getAllCredentialsByKeyword("show", entry);
-                possibilities.addAll(pass);
-            }
-        } catch (IOException | InterruptedException e) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Credentials lookup has been interrupted.");
+        } finally {
+            pool.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Rank the entries located, the ones sharing no whole token with the keystore (i.e. located by a part of a word)
+     * coming last, and keep up to the maximum number of candidates.
+     */
+    List<String> rank(Set<String> entries, String targetEntry, String project) {
+        Set<String> ranked = new LinkedHashSet<>(new CredentialIndex(entries).search(maxCandidates, project, targetEntry));
+        ranked.addAll(entries);
+        return ranked.stream().limit(maxCandidates).collect(Collectors.toList());
+    }
+
+    /**
+     * Retrieve the credential held by a keepass entry.
+     *
+     * @param entry Path of the keepass entry.
+     * @return The credential if the entry still exists.
+     */
+    @Override
+    public Optional<Credential> getCredential(String entry) {
+        if (loadCredentials().isEmpty())
+            return Optional.empty();
+        try {
+            return read(entry);
+        } catch (IOException e) {
             log.error(e.getMessage());
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Credentials lookup has been interrupted.");
+            return Optional.empty();
         }
-        return possibilities;
     }
-}
\ No newline at end of file
+}
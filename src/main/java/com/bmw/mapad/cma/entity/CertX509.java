@@ -16,11 +16,20 @@ import java.util.Date;
 @Getter
 public class CertX509 extends Cert {
     private final BigInteger serialNumber;
+    private final String subject;
+    private final String fingerprint;
+    private final String region;
+    private final String account;
 
     @Builder
     public CertX509(@NonNull BigInteger serialNumber, @NonNull String alias, @NonNull Date startAfter,
-                    @NonNull Date finishBefore, String project, String source, String issueID) {
+                    @NonNull Date finishBefore, String project, String source, String issueID, String subject,
+                    String fingerprint, String region, String account) {
         super(project, alias, startAfter, finishBefore, source, issueID);
         this.serialNumber = serialNumber;
+        this.subject = subject;
+        this.fingerprint = fingerprint;
+        this.region = region;
+        this.account = account;
     }
 }
@@ -1,6 +1,7 @@
 package com.bmw.mapad.cma.entity;
 
 import lombok.Data;
+import lombok.ToString;
 
 import java.util.*;
 
@@ -8,10 +9,18 @@ import java.util.*;
 /**
  * This class represents a structure of the key store file uploaded.
  * This key store file has a set of cryptographic keys and certificates.
+ * Its content might be held in memory along with its git blob id, otherwise it is read from the path file.
+ * Once loaded, its status tells whether it was unlocked or why it could not be.
  */
 @Data
 public class KeystoreFile {
     private final String pathFile;
+    private final String project;
     private String nameFile;
+    private String blobId;
+    private KeystoreType type = KeystoreType.UNKNOWN;
+    private KeystoreStatus status;
+    @ToString.Exclude
+    private byte[] content;
     private List<Cert> storedCertificates = new ArrayList<>();
 }
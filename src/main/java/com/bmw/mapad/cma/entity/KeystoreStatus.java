@@ -0,0 +1,12 @@
+package com.bmw.mapad.cma.entity;
+
+/**
+ * Outcome of loading a keystore file.
+ */
+public enum KeystoreStatus {
+    UNLOCKED,
+    NO_PASSWORD,
+    UNPARSEABLE,
+    UNREADABLE,
+    TIMED_OUT
+}
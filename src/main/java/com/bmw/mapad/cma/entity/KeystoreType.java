@@ -0,0 +1,20 @@
+package com.bmw.mapad.cma.entity;
+
+/**
+ * Formats of the files holding certificates, detected from the first bytes of their content.
+ */
+public enum KeystoreType {
+    JKS,
+    JCEKS,
+    PKCS12,
+    PEM,
+    UNKNOWN;
+
+    /**
+     * Check if this type can be loaded as a java KeyStore. The name of the enum is the KeyStore type itself.
+     * @return true if it is a keystore format otherwise false.
+     */
+    public boolean isKeystore() {
+        return this == JKS || this == JCEKS || this == PKCS12;
+    }
+}
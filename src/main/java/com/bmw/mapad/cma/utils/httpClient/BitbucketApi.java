@@ -0,0 +1,26 @@
+package com.bmw.mapad.cma.utils.httpClient;
+
+import com.bmw.mapad.cma.crawler.dto.RepositoriesPage;
+import retrofit2.Call;
+import retrofit2.http.GET;
+import retrofit2.http.Path;
+import retrofit2.http.Query;
+
+/**
+ * Retrofit interface to establish connection with Bitbucket rest api.
+ * For further information about the paged APIs consider visit Bitbucket Server Rest API official documentation.
+ */
+public interface BitbucketApi {
+
+    /**
+     * Returns one page of the repositories belonging to a project.
+     *
+     * @param projectKey Key of the project (i.e MUPI).
+     * @param start      Index of the first repository of the page.
+     * @param limit      Maximum number of repositories of the page.
+     */
+    @GET("projects/{projectKey}/repos")
+    Call<RepositoriesPage> getRepositories(@Path("projectKey") String projectKey,
+                                           @Query("start") int start,
+                                           @Query("limit") int limit);
+}
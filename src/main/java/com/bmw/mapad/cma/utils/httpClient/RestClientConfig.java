@@ -27,6 +27,11 @@ public class RestClientConfig {
     @Value("${cma.notifier.confluence.token:token}")
     String confluenceToken;
 
+    @Value("${cma.crawler.bitbucket.baseUrl:https://atc.bmwgroup.net/bitbucket/rest/api/1.0/}")
+    String bitbucketBaseUrl;
+    @Value("${cma.crawler.bitbucket.token:token}")
+    String bitbucketToken;
+
     /**
      * Return a Retrofit instance providing a http client. This client is based on API interface defined elsewhere so
      * will offer a couple of pre-defined endpoints defined there.
@@ -79,4 +84,30 @@ public class RestClientConfig {
                 .build()
                 .create(ConfluenceAPI.class);
     }
+
+    /**
+     * Return a Retrofit instance providing a http client. This client is based on API interface defined elsewhere so
+     * will offer a couple of pre-defined endpoints defined there.
+     * @return An implementation of Retrofit interface.
+     */
+    @Bean("bitbucketClient")
+    public BitbucketApi bitbucketClient(){
+        OkHttpClient.Builder httpClientBuilder = new OkHttpClient
+                .Builder()
+                .addInterceptor((chain)->{
+                    Request authenticatedRequest = chain.request().newBuilder()
+                            .header("Authorization", "Bearer " + bitbucketToken)
+                            .build();
+                    return chain.proceed(authenticatedRequest);
+                })
+                .connectTimeout(1, TimeUnit.MINUTES)
+                .readTimeout(1, TimeUnit.MINUTES);
+
+        return new Retrofit.Builder()
+                .client(httpClientBuilder.build())
+                .baseUrl(bitbucketBaseUrl)
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(BitbucketApi.class);
+    }
 }
@@ -0,0 +1,145 @@
+package com.bmw.mapad.cma;
+
+import com.bmw.mapad.cma.crawler.BitbucketDiscoveryService;
+import com.bmw.mapad.cma.utils.httpClient.RestClientConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.client.MockServerClient;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.Header;
+import org.mockserver.verify.VerificationTimes;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+
+@SpringBootTest(classes = {BitbucketDiscoveryService.class, RestClientConfig.class})
+public class BitbucketDiscoveryTest {
+    static int port = 8083;
+
+    @Autowired
+    BitbucketDiscoveryService discoveryService;
+    static ClientAndServer mockServer;
+
+    /**
+     * Override the baseUrl from Bitbucket for using the local mock server.
+     *
+     * @param registry
+     */
+    @DynamicPropertySource
+    static void registerBitbucketProperties(DynamicPropertyRegistry registry) {
+        registry.add("cma.crawler.bitbucket.baseUrl", () -> "http://127.0.0.1:8083/");
+        registry.add("cma.crawler.bitbucket.projects", () -> "MUPI");
+        registry.add("cma.crawler.bitbucket.discovery.page-size", () -> "2");
+        registry.add("cma.crawler.bitbucket.discovery.concurrency", () -> "2");
+    }
+
+    /**
+     * Initialize the mock server.
+     */
+    @BeforeAll
+    public static void mockBitbucketApi() {
+        mockServer = ClientAndServer.startClientAndServer(port);
+    }
+
+    /**
+     * Clear the expectations and the listing cached by a previous scenario.
+     */
+    @BeforeEach
+    public void setUp() {
+        mockServer.reset();
+        ReflectionTestUtils.setField(discoveryService, "cachedRepositories", null);
+    }
+
+    /**
+     * Create expectation for the page of repositories starting at the index passed as argument.
+     */
+    private void expectationForPage(int start, boolean isLastPage, String... slugs) {
+        StringBuilder values = new StringBuilder();
+        for (String slug : slugs) {
+            if (values.length() > 0)
+                values.append(',');
+            values.append(String.format("{\"slug\":\"%1$s\",\"links\":{\"clone\":[" +
+                    "{\"href\":\"ssh://git@atc.bmwgroup.net:7999/mupi/%1$s.git\",\"name\":\"ssh\"}," +
+                    "{\"href\":\"https://user@atc.bmwgroup.net/bitbucket/scm/mupi/%1$s.git\",\"name\":\"http\"}]}}", slug));
+        }
+        String body = String.format("{\"size\":%d,\"limit\":2,\"start\":%d,\"isLastPage\":%b,%s\"values\":[%s]}",
+                slugs.length, start, isLastPage, isLastPage ? "" : "\"nextPageStart\":" + (start + 2) + ",", values);
+
+        new MockServerClient("127.0.0.1", port)
+                .when(
+                        request()
+                                .withMethod("GET")
+                                .withPath("/projects/MUPI/repos")
+                                .withQueryStringParameter("start", String.valueOf(start))
+                ).respond(
+                        response()
+                                .withStatusCode(200)
+                                .withHeader(new Header("Content-Type", "application/json; charset=utf-8"))
+                                .withBody(body)
+                );
+    }
+
+    /**
+     * Testing scenario where a project holds several pages of repositories: every repository should be discovered in
+     * order, and a second discovery within the time to live should not reach the api again.
+     */
+    @Test
+    public void shouldReturnAllRepositories_WhenSeveralPages() {
+        //Given a project with five repositories in pages of two
+        expectationForPage(0, false, "mupi", "mupi-infrastructure");
+        expectationForPage(2, false, "mupi-frontend", "mupi-backend");
+        expectationForPage(4, true, "mupi-docs");
+        expectationForPage(6, true);
+
+        //When discovering the repositories twice
+        List<String> repositories = discoveryService.discoverRepositories();
+        List<String> cachedRepositories = discoveryService.discoverRepositories();
+
+        //Then all of them are returned as http clone urls without user, and the first page was requested once
+        assertThat(repositories).containsExactly(
+                "https://atc.bmwgroup.net/bitbucket/scm/mupi/mupi.git",
+                "https://atc.bmwgroup.net/bitbucket/scm/mupi/mupi-infrastructure.git",
+                "https://atc.bmwgroup.net/bitbucket/scm/mupi/mupi-frontend.git",
+                "https://atc.bmwgroup.net/bitbucket/scm/mupi/mupi-backend.git",
+                "https://atc.bmwgroup.net/bitbucket/scm/mupi/mupi-docs.git");
+        assertThat(cachedRepositories).isEqualTo(repositories);
+        mockServer.verify(request().withPath("/projects/MUPI/repos").withQueryStringParameter("start", "0"),
+                VerificationTimes.exactly(1));
+    }
+
+    /**
+     * Testing scenario where the api answers with an error: nothing should be discovered nor cached.
+     */
+    @Test
+    public void shouldReturnNoRepositories_WhenApiFails() {
+        //Given an api answering unauthorized
+        new MockServerClient("127.0.0.1", port)
+                .when(request().withMethod("GET").withPath("/projects/MUPI/repos"))
+                .respond(response().withStatusCode(401));
+
+        //When discovering the repositories
+        List<String> repositories = discoveryService.discoverRepositories();
+
+        //Then none is returned and the failure is not cached
+        assertThat(repositories).isEmpty();
+        assertThat(ReflectionTestUtils.getField(discoveryService, "cachedRepositories")).isNull();
+    }
+
+    /**
+     * Tear down the mock server.
+     */
+    @AfterAll
+    public static void shutdownServer() {
+        mockServer.stop();
+    }
+}
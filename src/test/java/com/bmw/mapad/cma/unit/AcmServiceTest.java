@@ -1,8 +1,12 @@
 package com.bmw.mapad.cma.unit;
 
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.regions.Regions;
 import com.amazonaws.services.certificatemanager.AWSCertificateManager;
 import com.amazonaws.services.certificatemanager.model.*;
+import com.bmw.mapad.cma.certificateextractor.acm.AcmClientFactory;
 import com.bmw.mapad.cma.certificateextractor.acm.AcmExporterService;
+import com.bmw.mapad.cma.certificateextractor.acm.AcmTarget;
 import com.bmw.mapad.cma.entity.Cert;
 import com.bmw.mapad.cma.entity.CertX509;
 import org.junit.jupiter.api.Assertions;
@@ -12,13 +16,25 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigInteger;
+import java.net.SocketException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -27,6 +43,8 @@ public class AcmServiceTest {
     AcmExporterService acmExporter;
     @Mock
     static AWSCertificateManager awsClient;
+    @Mock
+    AcmClientFactory acmClientFactory;
     static ListCertificatesResult certReturned = new ListCertificatesResult();
     static DescribeCertificateResult result1;
 
@@ -34,7 +52,7 @@ public class AcmServiceTest {
     static void setUp(){
         result1 = new DescribeCertificateResult();
         CertificateDetail certInfo1 = new CertificateDetail()
-                .withCertificateArn("arn-test-1")
+                .withCertificateArn("arn:aws:acm:eu-central-1:123456789012:certificate/test-1")
                 .withNotBefore(new Date())
                 .withNotAfter(new Date())
                 .withDomainName("test.ctw");
@@ -58,10 +76,10 @@ public class AcmServiceTest {
 
         Cert expectedCert1 = CertX509.builder()
                 .serialNumber(BigInteger.ONE)
-                .alias("arn-test-1")
+                .alias("arn:aws:acm:eu-central-1:123456789012:certificate/test-1")
                 .startAfter(new Date())
                 .finishBefore(new Date())
-                .project("test.ctw")
+                .project("123456789012")
                 .source("certificate manager")
                 .build();
 
@@ -72,6 +90,9 @@ public class AcmServiceTest {
         Assertions.assertEquals(1, certsFound.size());
         Assertions.assertTrue(certsFound.stream()
                 .anyMatch(cert -> cert.equals(expectedCert1)));
+        Assertions.assertEquals("eu-central-1", ((CertX509) certsFound.get(0)).getRegion());
+        Assertions.assertEquals("123456789012", ((CertX509) certsFound.get(0)).getAccount());
+        Assertions.assertEquals("CN=test.ctw", ((CertX509) certsFound.get(0)).getSubject());
 
     }
 
@@ -91,4 +112,184 @@ public class AcmServiceTest {
         //Then
         Assertions.assertEquals(0, certsFound.size());
     }
-}
\ No newline at end of file
+
+    /**
+     * Given certificates spread over two pages when our Acm service fetch all the certificates
+     * then should follow the next token and describe the certificates of both pages.
+     */
+    @Test
+    public void should_FollowNextToken_When_CertsSpreadOverPages() {
+        //Given two pages with one certificate each
+        ListCertificatesResult firstPage = new ListCertificatesResult()
+                .withCertificateSummaryList(new CertificateSummary().withCertificateArn("arn-test-1"))
+                .withNextToken("token");
+        ListCertificatesResult lastPage = new ListCertificatesResult()
+                .withCertificateSummaryList(new CertificateSummary().withCertificateArn("arn-test-2"));
+        when(awsClient.listCertificates(any())).thenReturn(firstPage, lastPage);
+        when(awsClient.describeCertificate(any())).thenAnswer(invocation -> new DescribeCertificateResult()
+                .withCertificate(new CertificateDetail()
+                        .withCertificateArn(((DescribeCertificateRequest) invocation.getArgument(0)).getCertificateArn())
+                        .withNotBefore(new Date())
+                        .withNotAfter(new Date())
+                        .withDomainName("test.ctw")));
+        ReflectionTestUtils.setField(acmExporter, "concurrency", 2);
+
+        //When fetch from ACM
+        List<Cert> certsFound = acmExporter.exportAllCert();
+
+        //Then
+        Assertions.assertEquals(List.of("arn-test-1", "arn-test-2"),
+                certsFound.stream().map(Cert::getAlias).collect(Collectors.toList()));
+        verify(awsClient, times(2)).listCertificates(any());
+    }
+
+    /**
+     * Given ACM throttling the first request when our Acm service describes a certificate
+     * then should retry it and still return the certificate.
+     */
+    @Test
+    public void should_RetryRequest_When_Throttled() {
+        //Given a throttled describe request followed by a successful one
+        AWSCertificateManagerException throttled = new AWSCertificateManagerException("Rate exceeded");
+        throttled.setErrorCode("ThrottlingException");
+        certReturned.setCertificateSummaryList(List.of(new CertificateSummary().withCertificateArn("arn:aws:acm:eu-central-1:123456789012:certificate/test-1")));
+        when(awsClient.listCertificates(any())).thenReturn(certReturned);
+        when(awsClient.describeCertificate(any())).thenThrow(throttled).thenReturn(result1);
+        ReflectionTestUtils.setField(acmExporter, "maxRetries", 1);
+
+        //When fetch from ACM
+        List<Cert> certsFound = acmExporter.exportAllCert();
+
+        //Then
+        Assertions.assertEquals(1, certsFound.size());
+        verify(awsClient, times(2)).describeCertificate(any());
+    }
+
+    /**
+     * Given ACM failing the first request with a server error, and the second one with an IO error, when our Acm
+     * service describes a certificate then should retry both and still return the certificate, while a client error
+     * should not be retried.
+     */
+    @Test
+    public void should_RetryRequest_When_ServerOrIoError() {
+        //Given a describe request failing with a 503 then with a connection reset, followed by a successful one
+        AWSCertificateManagerException unavailable = new AWSCertificateManagerException("Service unavailable");
+        unavailable.setStatusCode(503);
+        AmazonClientException reset = new AmazonClientException("Unable to execute HTTP request",
+                new SocketException("Connection reset"));
+        certReturned.setCertificateSummaryList(List.of(new CertificateSummary().withCertificateArn("arn:aws:acm:eu-central-1:123456789012:certificate/test-1")));
+        when(awsClient.listCertificates(any())).thenReturn(certReturned);
+        when(awsClient.describeCertificate(any())).thenThrow(unavailable).thenThrow(reset).thenReturn(result1);
+        ReflectionTestUtils.setField(acmExporter, "maxRetries", 2);
+        ReflectionTestUtils.setField(acmExporter, "backoff", 0L);
+
+        //When fetch from ACM
+        List<Cert> certsFound = acmExporter.exportAllCert();
+
+        //Then
+        Assertions.assertEquals(1, certsFound.size());
+        verify(awsClient, times(3)).describeCertificate(any());
+
+        //And a request denied is not retried
+        AWSCertificateManagerException denied = new AWSCertificateManagerException("Access denied");
+        denied.setStatusCode(400);
+        denied.setErrorCode("AccessDeniedException");
+        doThrow(denied).when(awsClient).describeCertificate(any());
+        Assertions.assertTrue(acmExporter.exportAllCert().isEmpty());
+        verify(awsClient, times(4)).describeCertificate(any());
+    }
+
+    /**
+     * Given ACM throttling the first request when our Acm service retries it
+     * then the retry should take a token of the bucket like any other request.
+     */
+    @Test
+    public void should_ConsumeToken_When_RetryingRequest() {
+        //Given a bucket of 2 requests per second, spent by the listing and the throttled describe request
+        AWSCertificateManagerException throttled = new AWSCertificateManagerException("Rate exceeded");
+        throttled.setErrorCode("ThrottlingException");
+        certReturned.setCertificateSummaryList(List.of(new CertificateSummary().withCertificateArn("arn:aws:acm:eu-central-1:123456789012:certificate/test-1")));
+        when(awsClient.listCertificates(any())).thenReturn(certReturned);
+        when(awsClient.describeCertificate(any())).thenThrow(throttled).thenReturn(result1);
+        ReflectionTestUtils.setField(acmExporter, "rate", 2.0);
+        ReflectionTestUtils.setField(acmExporter, "maxRetries", 1);
+        ReflectionTestUtils.setField(acmExporter, "backoff", 0L);
+
+        //When fetch from ACM
+        long start = System.nanoTime();
+        List<Cert> certsFound = acmExporter.exportAllCert();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        //Then the retry waited for the third token, refilled after half a second
+        Assertions.assertEquals(1, certsFound.size());
+        Assertions.assertTrue(elapsed >= 450, "Retry did not wait for a token: " + elapsed + " ms");
+        verify(awsClient, times(2)).describeCertificate(any());
+    }
+
+    /**
+     * Given two targets in different regions and accounts when our Acm service fetch all the certificates
+     * then should export both through a client of their own and tag each certificate with its region and account.
+     */
+    @Test
+    public void should_TagCertsWithTarget_When_SeveralTargets() {
+        //Given a target with the configured credentials and a target assuming a role of another account
+        AWSCertificateManager euClient = mock(AWSCertificateManager.class);
+        AWSCertificateManager usClient = mock(AWSCertificateManager.class);
+        when(acmClientFactory.create(any(AcmTarget.class), anyInt())).thenAnswer(invocation ->
+                ((AcmTarget) invocation.getArgument(0)).getRegion() == Regions.EU_CENTRAL_1 ? euClient : usClient);
+        when(euClient.listCertificates(any())).thenReturn(new ListCertificatesResult()
+                .withCertificateSummaryList(new CertificateSummary().withCertificateArn("arn-eu")));
+        when(euClient.describeCertificate(any())).thenReturn(result1);
+        when(usClient.listCertificates(any())).thenReturn(new ListCertificatesResult()
+                .withCertificateSummaryList(new CertificateSummary().withCertificateArn("arn-us")));
+        when(usClient.describeCertificate(any())).thenReturn(new DescribeCertificateResult().withCertificate(new CertificateDetail()
+                .withCertificateArn("arn-us")
+                .withNotBefore(new Date())
+                .withNotAfter(new Date())
+                .withDomainName("test.us")));
+        ReflectionTestUtils.setField(acmExporter, "targets",
+                new String[]{"eu-central-1", "US_EAST_1:arn:aws:iam::210987654321:role/cma-reader"});
+
+        //When fetch from ACM
+        List<Cert> certsFound = acmExporter.exportAllCert();
+
+        //Then
+        Assertions.assertEquals(List.of("eu-central-1/123456789012", "us-east-1/210987654321"), certsFound.stream()
+                .map(cert -> ((CertX509) cert).getRegion() + "/" + ((CertX509) cert).getAccount())
+                .collect(Collectors.toList()));
+        verify(acmClientFactory).release(euClient);
+        verify(acmClientFactory).release(usClient);
+        verify(awsClient, never()).listCertificates(any());
+    }
+
+    /**
+     * Given more targets than the target concurrency configured when our Acm service fetch all the certificates
+     * then should never export more targets at the same time than configured.
+     */
+    @Test
+    public void should_BoundTargets_When_MoreTargetsThanConcurrency() {
+        //Given three targets exported one at a time
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(acmClientFactory.create(any(AcmTarget.class), anyInt())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            AWSCertificateManager client = mock(AWSCertificateManager.class);
+            when(client.listCertificates(any())).thenAnswer(list -> {
+                TimeUnit.MILLISECONDS.sleep(50);
+                return new ListCertificatesResult().withCertificateSummaryList();
+            });
+            return client;
+        });
+        doAnswer(invocation -> running.decrementAndGet()).when(acmClientFactory).release(any());
+        ReflectionTestUtils.setField(acmExporter, "targetConcurrency", 1);
+        ReflectionTestUtils.setField(acmExporter, "targets", new String[]{"eu-central-1", "eu-west-1", "us-east-1"});
+
+        //When fetch from ACM
+        List<Cert> certsFound = acmExporter.exportAllCert();
+
+        //Then
+        Assertions.assertTrue(certsFound.isEmpty());
+        Assertions.assertEquals(1, maxRunning.get());
+        verify(acmClientFactory, times(3)).release(any());
+    }
+}
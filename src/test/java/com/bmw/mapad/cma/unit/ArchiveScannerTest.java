@@ -0,0 +1,98 @@
+package com.bmw.mapad.cma.unit;
+
+import com.bmw.mapad.cma.crawler.ArchiveScanner;
+import com.bmw.mapad.cma.crawler.FileMatcher;
+import com.bmw.mapad.cma.crawler.KeystoreTypeDetector;
+import com.bmw.mapad.cma.entity.KeystoreFile;
+import com.bmw.mapad.cma.entity.KeystoreType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Test class aiming test scenarios in the archive scanner.
+ */
+public class ArchiveScannerTest {
+    @TempDir
+    Path repository;
+    ArchiveScanner archiveScanner;
+    Predicate<Path> include = FileMatcher.ofCandidates(List.of("jks", "p12"), true);
+    byte[] keystore;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        archiveScanner = new ArchiveScanner(new KeystoreTypeDetector());
+        ReflectionTestUtils.setField(archiveScanner, "extensions", new String[]{"jar", "war", "zip"});
+        ReflectionTestUtils.setField(archiveScanner, "maxDepth", 2);
+        ReflectionTestUtils.setField(archiveScanner, "maxSize", 1048576L);
+        ReflectionTestUtils.setField(archiveScanner, "maxEntrySize", 65536);
+
+        KeyStore jks = KeyStore.getInstance("JKS");
+        jks.load(null, null);
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        jks.store(content, "changeit".toCharArray());
+        keystore = content.toByteArray();
+    }
+
+    /**
+     * Return the content of a zip archive holding the entries passed as argument (name followed by content).
+     */
+    private byte[] zip(Object... entries) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(content)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                zip.putNextEntry(new ZipEntry((String) entries[i]));
+                zip.write((byte[]) entries[i + 1]);
+            }
+        }
+        return content.toByteArray();
+    }
+
+    /**
+     * Given a war holding a keystore and a jar with another keystore when scanning it then both keystores should be
+     * returned in memory, named after their archives, and entries which are not keystores should be discarded.
+     */
+    @Test
+    public void tc1_scanNestedArchives() throws IOException {
+        byte[] jar = zip("certs/server.jks", keystore, "App.class", new byte[64]);
+        Path war = repository.resolve("app.war");
+        Files.write(war, zip("WEB-INF/lib/lib.jar", jar, "WEB-INF/trust.p12", "not a keystore".getBytes(StandardCharsets.US_ASCII),
+                "WEB-INF/classes/client.jks", keystore));
+
+        List<KeystoreFile> keystores = archiveScanner.scan(war, "project", include);
+
+        Assertions.assertEquals(List.of(war + "!/WEB-INF/lib/lib.jar!/certs/server.jks", war + "!/WEB-INF/classes/client.jks"),
+                keystores.stream().map(KeystoreFile::getPathFile).collect(Collectors.toList()));
+        Assertions.assertTrue(keystores.stream().allMatch(k -> k.getType() == KeystoreType.JKS && k.getContent() != null));
+    }
+
+    /**
+     * Given archives beyond the nesting depth or the size limits when scanning them then they should be skipped.
+     */
+    @Test
+    public void tc2_skipArchivesBeyondLimits() throws IOException {
+        byte[] innerJar = zip("deep.jks", keystore);
+        Path zip = repository.resolve("bundle.zip");
+        Files.write(zip, zip("lib/outer.jar", zip("lib/inner.jar", innerJar)));
+        Assertions.assertTrue(archiveScanner.scan(zip, "project", include).isEmpty());
+
+        ReflectionTestUtils.setField(archiveScanner, "maxSize", 16L);
+        Path jar = repository.resolve("lib.jar");
+        Files.write(jar, innerJar);
+        Assertions.assertTrue(archiveScanner.scan(jar, "project", include).isEmpty());
+    }
+}
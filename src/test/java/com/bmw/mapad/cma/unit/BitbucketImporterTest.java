@@ -0,0 +1,155 @@
+package com.bmw.mapad.cma.unit;
+
+import com.bmw.mapad.cma.crawler.ArchiveScanner;
+import com.bmw.mapad.cma.crawler.BitbucketDiscoveryService;
+import com.bmw.mapad.cma.crawler.BitbucketImporterService;
+import com.bmw.mapad.cma.crawler.FileScanner;
+import com.bmw.mapad.cma.crawler.KeystoreTypeDetector;
+import com.bmw.mapad.cma.crawler.MirrorCache;
+import com.bmw.mapad.cma.credentialsmanagement.CredentialsDatabase;
+import com.bmw.mapad.cma.entity.KeystoreFile;
+import com.bmw.mapad.cma.entity.KeystoreType;
+import com.bmw.mapad.cma.utils.Utils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.KeyStore;
+import java.util.List;
+
+/**
+ * Test class aiming test scenarios in the bitbucket importer, cloning a local repository.
+ */
+public class BitbucketImporterTest {
+    @TempDir
+    Path remote;
+    String urlRepo;
+    byte[] keystoreContent;
+    BitbucketImporterService importer;
+    CredentialsDatabase credentialsDatabase;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Path repository = remote.resolve("team/service.git");
+        try (Git git = Git.init().setDirectory(repository.toFile()).setInitialBranch("main").call()) {
+            Files.writeString(repository.resolve("README.md"), "first version");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("first commit").setAuthor("cma", "cma@example.com").call();
+
+            Files.createDirectories(repository.resolve("config"));
+            keystoreContent = createKeystore();
+            Files.write(repository.resolve("config/server.jks"), keystoreContent);
+            Files.writeString(repository.resolve("config/credentials.kdbx"), "database");
+            Files.writeString(repository.resolve("README.md"), "second version");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("second commit").setAuthor("cma", "cma@example.com").call();
+        }
+        urlRepo = "file://" + repository;
+
+        FileScanner fileScanner = new FileScanner();
+        ReflectionTestUtils.setField(fileScanner, "pruneDirs", new String[]{".git"});
+        KeystoreTypeDetector keystoreTypeDetector = new KeystoreTypeDetector();
+        ArchiveScanner archiveScanner = new ArchiveScanner(keystoreTypeDetector);
+        ReflectionTestUtils.setField(archiveScanner, "extensions", new String[]{"jar"});
+        credentialsDatabase = new CredentialsDatabase();
+        ReflectionTestUtils.setField(credentialsDatabase, "pathFile", "config/credentials.kdbx");
+        importer = new BitbucketImporterService(new Utils(), new MirrorCache(new Utils()), fileScanner,
+                keystoreTypeDetector, Mockito.mock(BitbucketDiscoveryService.class), archiveScanner, credentialsDatabase);
+        ReflectionTestUtils.setField(importer, "user", "user");
+        ReflectionTestUtils.setField(importer, "token", "token");
+        ReflectionTestUtils.setField(importer, "certsToIgnore", new String[]{});
+        ReflectionTestUtils.setField(importer, "cloneMode", "full");
+        ReflectionTestUtils.setField(importer, "cloneModes", new String[]{});
+        ReflectionTestUtils.setField(importer, "extensionless", false);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        importer.release(urlRepo);
+        Files.deleteIfExists(Paths.get("projects/team"));
+    }
+
+    /**
+     * Return the content of an empty JKS keystore.
+     */
+    private byte[] createKeystore() throws Exception {
+        KeyStore keystore = KeyStore.getInstance("JKS");
+        keystore.load(null, null);
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        keystore.store(content, "changeit".toCharArray());
+        return content.toByteArray();
+    }
+
+    /**
+     * Given a repository in shallow mode when collecting its keystores then only the tip of the default branch should
+     * be cloned and only the matching files should be written to the working directory.
+     */
+    @Test
+    public void shouldWriteOnlyMatchingFiles_WhenShallowClone() throws Exception {
+        ReflectionTestUtils.setField(importer, "cloneModes", new String[]{"service:shallow"});
+
+        List<KeystoreFile> keystores = importer.collectKeystores(urlRepo, List.of("jks"));
+
+        Path directory = Paths.get("projects/team/service");
+        Assertions.assertEquals(1, keystores.size());
+        Assertions.assertEquals(directory.resolve("config/server.jks").toString(), keystores.get(0).getPathFile());
+        Assertions.assertEquals(KeystoreType.JKS, keystores.get(0).getType());
+        Assertions.assertFalse(Files.exists(directory.resolve("README.md")));
+        try (Git git = Git.open(directory.toFile())) {
+            int commits = 0;
+            for (RevCommit ignored : git.log().call())
+                commits++;
+            Assertions.assertEquals(1, commits);
+            Assertions.assertTrue(Files.exists(directory.resolve(".git/shallow")));
+        }
+    }
+
+    /**
+     * Given a repository read in memory when collecting its keystores then they should be handed over with their
+     * content and blob id, and no working tree should be written.
+     */
+    @Test
+    public void shouldReadKeystoresFromObjectDatabase_WhenInMemory() {
+        ReflectionTestUtils.setField(importer, "inMemory", true);
+
+        List<KeystoreFile> keystores = importer.collectKeystores(urlRepo, List.of("jks"));
+
+        Path directory = Paths.get("projects/team/service");
+        Assertions.assertEquals(1, keystores.size());
+        Assertions.assertEquals(KeystoreType.JKS, keystores.get(0).getType());
+        Assertions.assertArrayEquals(keystoreContent, keystores.get(0).getContent());
+        Assertions.assertEquals(new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, keystoreContent).name(),
+                keystores.get(0).getBlobId());
+        Assertions.assertFalse(Files.exists(directory.resolve("config/server.jks")));
+        Assertions.assertFalse(Files.exists(directory.resolve("README.md")));
+    }
+
+    /**
+     * Given a repository holding the credentials database when collecting its keystores in memory then the database
+     * should be registered while the files are indexed, and a copy of it should be kept once the repository is
+     * released.
+     */
+    @Test
+    public void shouldRegisterCredentialsDatabase_WhenIndexingFiles() throws Exception {
+        ReflectionTestUtils.setField(importer, "inMemory", true);
+
+        List<KeystoreFile> keystores = importer.collectKeystores(urlRepo, List.of("jks"));
+        importer.release(urlRepo);
+
+        Assertions.assertEquals(1, keystores.size());
+        Path database = credentialsDatabase.locate().orElseThrow();
+        Assertions.assertEquals("database", Files.readString(database));
+    }
+}
@@ -0,0 +1,79 @@
+package com.bmw.mapad.cma.unit;
+
+import com.bmw.mapad.cma.credentialsmanagement.Credential;
+import com.bmw.mapad.cma.credentialsmanagement.CredentialsCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Test class aiming test scenarios in the credentials cache.
+ */
+public class CredentialsCacheTest {
+
+    /**
+     * Given the entries located by a keyword and the credential of an entry cached when looking them up again then
+     * they should be taken from the cache, each caller getting its own copy of the credential which can be wiped
+     * without affecting the cache.
+     */
+    @Test
+    public void tc1_reuseCachedLookups() {
+        CredentialsCache cache = new CredentialsCache(600, 10);
+        cache.putLocated("payments", List.of("/Payments/Truststore"));
+        cache.putCredential(new Credential("/Payments/Truststore", "pass1")).wipe();
+        cache.getCredential("/Payments/Truststore").orElseThrow().wipe();
+
+        Assertions.assertEquals(Optional.of(List.of("/Payments/Truststore")), cache.getLocated("payments"));
+        Assertions.assertArrayEquals("pass1".toCharArray(), cache.getCredential("/Payments/Truststore").orElseThrow().getPassword());
+        Assertions.assertTrue(cache.getLocated("shop").isEmpty());
+    }
+
+    /**
+     * Given credentials beyond the maximum size of the cache when evicting the least recently used one then its
+     * password should be wiped and it should not be found any more.
+     */
+    @Test
+    public void tc2_wipeEvictedCredential() {
+        CredentialsCache cache = new CredentialsCache(600, 1);
+        Credential evicted = new Credential("/Shop/Client", "pass3");
+        cache.putCredential(evicted);
+        cache.putCredential(new Credential("/Shop/Payments-Gateway", "pass4"));
+
+        Assertions.assertArrayEquals(new char[5], evicted.getPassword());
+        Assertions.assertTrue(cache.getCredential("/Shop/Client").isEmpty());
+        Assertions.assertTrue(cache.getCredential("/Shop/Payments-Gateway").isPresent());
+    }
+
+    /**
+     * Given a cache without time to live when caching a credential then it should be wiped at once and looked up
+     * again, the caller still getting its copy.
+     */
+    @Test
+    public void tc3_expireImmediately_WhenNoTimeToLive() {
+        CredentialsCache cache = new CredentialsCache(0, 10);
+        Credential credential = new Credential("/Shop/Client", "pass3");
+
+        Credential copy = cache.putCredential(credential);
+
+        Assertions.assertArrayEquals("pass3".toCharArray(), copy.getPassword());
+        Assertions.assertArrayEquals(new char[5], credential.getPassword());
+        Assertions.assertTrue(cache.getCredential("/Shop/Client").isEmpty());
+    }
+
+    /**
+     * Given credentials cached when clearing the cache then every password should be wiped.
+     */
+    @Test
+    public void tc4_wipeOnClear() {
+        CredentialsCache cache = new CredentialsCache(600, 10);
+        Credential credential = new Credential("/Shop/Client", "pass3");
+        cache.putCredential(credential);
+
+        cache.clear();
+
+        Assertions.assertArrayEquals(new char[5], credential.getPassword());
+        Assertions.assertTrue(cache.getCredential("/Shop/Client").isEmpty());
+    }
+}
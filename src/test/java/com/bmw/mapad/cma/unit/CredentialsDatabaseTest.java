@@ -0,0 +1,67 @@
+package com.bmw.mapad.cma.unit;
+
+import com.bmw.mapad.cma.credentialsmanagement.CredentialsDatabase;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Test class aiming test scenarios in the credentials database locator.
+ */
+public class CredentialsDatabaseTest {
+    @TempDir
+    Path directory;
+    CredentialsDatabase credentialsDatabase;
+
+    @BeforeEach
+    public void setUp() {
+        credentialsDatabase = new CredentialsDatabase();
+        ReflectionTestUtils.setField(credentialsDatabase, "pathFile", "secrets/credentials.kdbx");
+    }
+
+    /**
+     * Given a database path which exists when locating the database then it should be used as is.
+     */
+    @Test
+    public void shouldUseConfiguredPath_WhenItExists() throws Exception {
+        Path database = Files.writeString(directory.resolve("credentials.kdbx"), "database");
+        ReflectionTestUtils.setField(credentialsDatabase, "pathFile", database.toString());
+
+        Assertions.assertEquals(database, credentialsDatabase.locate().orElseThrow());
+    }
+
+    /**
+     * Given files indexed from a repository when matching them against the database then only the ones ending with
+     * the whole path segments configured should match.
+     */
+    @Test
+    public void shouldMatchWholeSegments_WhenMatchingFiles() {
+        Assertions.assertTrue(credentialsDatabase.matches(Paths.get("projects/team/vault/secrets/credentials.kdbx")));
+        Assertions.assertTrue(credentialsDatabase.matches(Paths.get("secrets/credentials.kdbx")));
+        Assertions.assertFalse(credentialsDatabase.matches(Paths.get("projects/team/vault/secrets/mycredentials.kdbx")));
+        Assertions.assertFalse(credentialsDatabase.matches(Paths.get("projects/team/vault/mysecrets/credentials.kdbx")));
+    }
+
+    /**
+     * Given several databases registered when locating the database then a copy of the first one should be kept, and
+     * no database should be located until one is registered.
+     */
+    @Test
+    public void shouldKeepFirstDatabase_WhenSeveralAreRegistered() throws Exception {
+        Path first = Files.writeString(directory.resolve("first.kdbx"), "first");
+        Path second = Files.writeString(directory.resolve("second.kdbx"), "second");
+        Assertions.assertTrue(credentialsDatabase.locate().isEmpty());
+
+        credentialsDatabase.register(first);
+        credentialsDatabase.register(second);
+        Files.delete(first);
+
+        Assertions.assertEquals("first", Files.readString(credentialsDatabase.locate().orElseThrow()));
+    }
+}
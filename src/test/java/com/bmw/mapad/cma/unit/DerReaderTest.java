@@ -0,0 +1,63 @@
+package com.bmw.mapad.cma.unit;
+
+import com.bmw.mapad.cma.certificateextractor.keystore.DerReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * Test class aiming test scenarios in the DER reader.
+ */
+public class DerReaderTest {
+
+    /**
+     * Given a sequence holding elements with short and long form lengths when skipping them then the reader should be
+     * left at the start of the next element.
+     */
+    @Test
+    public void shouldLandOnNextElement_WhenSkipping() throws IOException {
+        byte[] longOctetString = new byte[3 + 200];
+        longOctetString[0] = DerReader.OCTET_STRING;
+        longOctetString[1] = (byte) 0x81;
+        longOctetString[2] = (byte) 200;
+        byte[] content = new byte[3 + 3 + 203 + 3];
+        int i = 0;
+        content[i++] = DerReader.INTEGER;
+        content[i++] = 0x01;
+        content[i++] = 0x05;
+        content[i++] = DerReader.OCTET_STRING;
+        content[i++] = 0x01;
+        content[i++] = 0x00;
+        System.arraycopy(longOctetString, 0, content, i, 203);
+        i += 203;
+        content[i++] = DerReader.INTEGER;
+        content[i++] = 0x01;
+        content[i] = 0x07;
+        byte[] sequence = new byte[content.length + 3];
+        sequence[0] = DerReader.SEQUENCE;
+        sequence[1] = (byte) 0x81;
+        sequence[2] = (byte) content.length;
+        System.arraycopy(content, 0, sequence, 3, content.length);
+
+        DerReader elements = new DerReader(sequence).readSequence();
+        elements.skip();
+        elements.skip();
+        elements.skip();
+
+        Assertions.assertEquals(BigInteger.valueOf(7), elements.readInteger());
+        Assertions.assertFalse(elements.hasMore());
+    }
+
+    /**
+     * Given an element whose length exceeds the structure when skipping it then it should fail instead of moving past
+     * the end of the structure.
+     */
+    @Test
+    public void shouldFail_WhenSkippingTruncatedElement() {
+        DerReader reader = new DerReader(new byte[]{DerReader.OCTET_STRING, 0x05, 0x00, 0x00});
+
+        Assertions.assertThrows(IOException.class, reader::skip);
+    }
+}
@@ -0,0 +1,112 @@
+package com.bmw.mapad.cma.unit;
+
+import com.bmw.mapad.cma.certificateextractor.keystore.ExtractionCache;
+import com.bmw.mapad.cma.entity.Cert;
+import com.bmw.mapad.cma.entity.CertX509;
+import com.bmw.mapad.cma.entity.KeystoreFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Test class aiming test scenarios in the extraction cache.
+ */
+public class ExtractionCacheTest {
+    @TempDir
+    Path tempDir;
+    ExtractionCache extractionCache;
+
+    @BeforeEach
+    public void setUp() {
+        extractionCache = new ExtractionCache();
+        ReflectionTestUtils.setField(extractionCache, "cacheFile", tempDir.resolve("cache.json").toString());
+        ReflectionTestUtils.setField(extractionCache, "maxEntries", 2);
+    }
+
+    private Cert sampleCert(String alias) {
+        return CertX509.builder()
+                .serialNumber(BigInteger.TEN)
+                .alias(alias)
+                .startAfter(new Date(0))
+                .finishBefore(new Date(1000))
+                .project("project")
+                .source("source")
+                .build();
+    }
+
+    /**
+     * Blob id must match the one computed by git (i.e. git hash-object).
+     */
+    @Test
+    public void shouldReturnGitBlobId_WhenHashingContent() {
+        Assertions.assertEquals("e69de29bb2d1d6434b8b29ae775ad8c2e48c5391", extractionCache.getBlobId(new byte[0]));
+    }
+
+    /**
+     * Blob id of a file hashed as it is read must match the one of its content.
+     */
+    @Test
+    public void shouldReturnSameBlobId_WhenHashingFile() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("keystore.jks"), "keystore content");
+
+        Assertions.assertEquals(extractionCache.getBlobId(Files.readAllBytes(file)), extractionCache.getBlobId(file));
+    }
+
+    /**
+     * Given a keystore extracted in a previous run when the same content is found in another location then the
+     * certificates should come from the cache bound to the new location.
+     */
+    @Test
+    public void shouldReturnCachedCert_WhenSameContentWasSaved() {
+        //Given
+        extractionCache.put("blob1", List.of(sampleCert("alias1")));
+        extractionCache.save();
+
+        ExtractionCache nextRun = new ExtractionCache();
+        ReflectionTestUtils.setField(nextRun, "cacheFile", tempDir.resolve("cache.json").toString());
+        ReflectionTestUtils.setField(nextRun, "maxEntries", 2);
+        KeystoreFile keystoreFile = new KeystoreFile("other/path.jks", "other-project");
+        keystoreFile.setBlobId("blob1");
+
+        //When
+        Optional<List<Cert>> certs = nextRun.get(keystoreFile);
+
+        //Then
+        Assertions.assertTrue(certs.isPresent());
+        Assertions.assertEquals("alias1", certs.get().get(0).getAlias());
+        Assertions.assertEquals("other-project", certs.get().get(0).getProject());
+        Assertions.assertEquals("other/path.jks", certs.get().get(0).getSource());
+        Assertions.assertEquals(1000, certs.get().get(0).getFinishBefore().getTime());
+    }
+
+    /**
+     * Given a full cache when a new keystore is stored then the least recently used one should be evicted.
+     */
+    @Test
+    public void shouldEvictLeastRecentlyUsed_WhenCacheIsFull() {
+        //Given
+        KeystoreFile first = new KeystoreFile("first.jks", "project");
+        first.setBlobId("blob1");
+        KeystoreFile second = new KeystoreFile("second.jks", "project");
+        second.setBlobId("blob2");
+        extractionCache.put("blob1", List.of(sampleCert("alias1")));
+        extractionCache.put("blob2", List.of(sampleCert("alias2")));
+        extractionCache.get(first);
+
+        //When
+        extractionCache.put("blob3", List.of(sampleCert("alias3")));
+
+        //Then
+        Assertions.assertTrue(extractionCache.get(first).isPresent());
+        Assertions.assertFalse(extractionCache.get(second).isPresent());
+    }
+}
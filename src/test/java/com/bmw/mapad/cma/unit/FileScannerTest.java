@@ -0,0 +1,66 @@
+package com.bmw.mapad.cma.unit;
+
+import com.bmw.mapad.cma.crawler.FileMatcher;
+import com.bmw.mapad.cma.crawler.FileScanner;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Test class aiming test scenarios in the file scanner.
+ */
+public class FileScannerTest {
+    @TempDir
+    Path repository;
+    FileScanner fileScanner;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        fileScanner = new FileScanner();
+        ReflectionTestUtils.setField(fileScanner, "pruneDirs", new String[]{".git", "node_modules", "build"});
+
+        for (String file : List.of("src/main/resources/server.jks", "src/test/resources/client.jks",
+                "cacerts.jks", ".git/objects/copy.jks", "web/node_modules/lib/module.jks", "build/output.jks",
+                "docs/readme.md", "certs/client.p12")) {
+            Path path = repository.resolve(file);
+            Files.createDirectories(path.getParent());
+            Files.createFile(path);
+        }
+    }
+
+    /**
+     * Given a repository with keystores in pruned folders when scanning for jks files then only the keystores out of
+     * pruned folders and not ignored should be returned.
+     */
+    @Test
+    public void shouldSkipPrunedAndIgnored_WhenScanning() {
+        //When
+        List<Path> found = fileScanner.scan(repository, FileMatcher.ofSuffixes(List.of("jks")),
+                FileMatcher.ofSuffixes(List.of("cacerts.jks")));
+
+        //Then
+        Assertions.assertEquals(List.of(repository.resolve("src/main/resources/server.jks"),
+                repository.resolve("src/test/resources/client.jks")), found);
+    }
+
+    /**
+     * Given glob patterns when scanning then they should be matched against the file name or the whole path.
+     */
+    @Test
+    public void shouldMatchGlobs_WhenScanning() {
+        //When
+        List<Path> found = fileScanner.scan(repository, FileMatcher.ofSuffixes(List.of("*.p12", "jks")),
+                FileMatcher.ofSuffixes(List.of("**/test/**")));
+
+        //Then
+        Assertions.assertEquals(List.of(repository.resolve("cacerts.jks"), repository.resolve("certs/client.p12"),
+                repository.resolve("src/main/resources/server.jks")), found);
+    }
+}
@@ -0,0 +1,110 @@
+package com.bmw.mapad.cma.unit;
+
+import com.bmw.mapad.cma.certificateextractor.keystore.ExtractionCache;
+import com.bmw.mapad.cma.crawler.ArchiveScanner;
+import com.bmw.mapad.cma.crawler.FileIndex;
+import com.bmw.mapad.cma.crawler.FileScanner;
+import com.bmw.mapad.cma.crawler.FileSystemImporterService;
+import com.bmw.mapad.cma.crawler.KeystoreTypeDetector;
+import com.bmw.mapad.cma.credentialsmanagement.CredentialsDatabase;
+import com.bmw.mapad.cma.entity.KeystoreFile;
+import com.bmw.mapad.cma.entity.KeystoreType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyStore;
+import java.util.List;
+
+/**
+ * Test class aiming test scenarios in the file system importer.
+ */
+public class FileSystemImporterTest {
+    @TempDir
+    Path volume;
+    @TempDir
+    Path workspace;
+    Path keystorePath;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        keystorePath = volume.resolve("secrets/app/truststore");
+        Files.createDirectories(keystorePath.getParent());
+        KeyStore keystore = KeyStore.getInstance("JKS");
+        keystore.load(null, null);
+        try (OutputStream out = Files.newOutputStream(keystorePath)) {
+            keystore.store(out, "changeit".toCharArray());
+        }
+        Files.writeString(volume.resolve("secrets/app/application.yml"), "server: 8080");
+        Files.writeString(volume.resolve("secrets/app/README"), "not a keystore");
+    }
+
+    /**
+     * Return a new importer loading the file index saved by the previous run, as a new run would do.
+     */
+    private FileSystemImporterService newImporter() {
+        FileIndex fileIndex = new FileIndex();
+        ReflectionTestUtils.setField(fileIndex, "indexFile", workspace.resolve("index.json").toString());
+        FileScanner fileScanner = new FileScanner();
+        ReflectionTestUtils.setField(fileScanner, "pruneDirs", new String[]{".git"});
+        KeystoreTypeDetector keystoreTypeDetector = new KeystoreTypeDetector();
+        ArchiveScanner archiveScanner = new ArchiveScanner(keystoreTypeDetector);
+        ReflectionTestUtils.setField(archiveScanner, "extensions", new String[]{"jar", "zip"});
+        ReflectionTestUtils.setField(archiveScanner, "maxDepth", 2);
+        ReflectionTestUtils.setField(archiveScanner, "maxSize", 1048576L);
+        ReflectionTestUtils.setField(archiveScanner, "maxEntrySize", 65536);
+        CredentialsDatabase credentialsDatabase = new CredentialsDatabase();
+        ReflectionTestUtils.setField(credentialsDatabase, "pathFile", "");
+        FileSystemImporterService importer = new FileSystemImporterService(fileScanner, keystoreTypeDetector, fileIndex,
+                archiveScanner, new ExtractionCache(), credentialsDatabase);
+        ReflectionTestUtils.setField(importer, "roots", new String[]{volume.toString()});
+        ReflectionTestUtils.setField(importer, "certsToIgnore", new String[]{});
+        ReflectionTestUtils.setField(importer, "extensionless", true);
+        return importer;
+    }
+
+    /**
+     * Given a volume with a keystore without extension when collecting keystores then only the keystore should be
+     * returned along with its type and blob id.
+     */
+    @Test
+    public void tc1_collectKeystores() {
+        FileSystemImporterService importer = newImporter();
+
+        List<KeystoreFile> keystores = importer.collectKeystores(volume.toString(), List.of("jks"));
+
+        Assertions.assertEquals(1, keystores.size());
+        Assertions.assertEquals(keystorePath.toString(), keystores.get(0).getPathFile());
+        Assertions.assertEquals(KeystoreType.JKS, keystores.get(0).getType());
+        Assertions.assertNotNull(keystores.get(0).getBlobId());
+    }
+
+    /**
+     * Given a keystore indexed in a previous run when its content is replaced keeping size and modification time then
+     * it should be taken from the index, and once its modification time changes it should be classified again.
+     */
+    @Test
+    public void tc2_skipUnchangedFiles() throws Exception {
+        FileSystemImporterService importer = newImporter();
+        List<KeystoreFile> firstRun = importer.collectKeystores(volume.toString(), List.of("jks"));
+        importer.release(volume.toString());
+        FileTime modified = Files.getLastModifiedTime(keystorePath);
+        Files.write(keystorePath, new byte[(int) Files.size(keystorePath)]);
+        Files.setLastModifiedTime(keystorePath, modified);
+
+        importer = newImporter();
+        List<KeystoreFile> secondRun = importer.collectKeystores(volume.toString(), List.of("jks"));
+        importer.release(volume.toString());
+        Assertions.assertEquals(1, secondRun.size());
+        Assertions.assertEquals(firstRun.get(0).getBlobId(), secondRun.get(0).getBlobId());
+
+        Files.setLastModifiedTime(keystorePath, FileTime.fromMillis(modified.toMillis() + 60000));
+        Assertions.assertTrue(newImporter().collectKeystores(volume.toString(), List.of("jks")).isEmpty());
+    }
+}
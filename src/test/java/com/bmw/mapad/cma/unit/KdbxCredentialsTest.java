@@ -0,0 +1,148 @@
+package com.bmw.mapad.cma.unit;
+
+import com.bmw.mapad.cma.credentialsmanagement.Credential;
+import com.bmw.mapad.cma.credentialsmanagement.CredentialsCache;
+import com.bmw.mapad.cma.credentialsmanagement.CredentialsDatabase;
+import com.bmw.mapad.cma.credentialsmanagement.KdbxCredentialsService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test class aiming test scenarios in the in process keepass credentials manager, reading the keepass database
+ * credentials.kdbx from the test resources. Its master password is "secret" and it holds the entries
+ * /Payments/Server-Keystore, /Payments/Truststore, /Shop/Client, /Shop/Payments-Gateway, /Shop/Empty (without
+ * password) and /Platform/Internal/Legacy.
+ */
+public class KdbxCredentialsTest {
+    KdbxCredentialsService kdbxCredentials;
+    CredentialsCache credentialsCache;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        CredentialsDatabase credentialsDatabase = new CredentialsDatabase();
+        ReflectionTestUtils.setField(credentialsDatabase, "pathFile",
+                Paths.get(getClass().getResource("/credentials.kdbx").toURI()).toString());
+        credentialsCache = Mockito.spy(new CredentialsCache(600, 100));
+        kdbxCredentials = new KdbxCredentialsService(credentialsDatabase, credentialsCache);
+        ReflectionTestUtils.setField(kdbxCredentials, "password", "secret");
+        ReflectionTestUtils.setField(kdbxCredentials, "maxCandidates", 20);
+    }
+
+    /**
+     * Given the path of a keystore when looking for its credentials then the entries sharing words with it should be
+     * returned once, the ones sharing the most specific words first.
+     */
+    @Test
+    public void tc1_findRankedCredentials() {
+        List<Credential> credentials = kdbxCredentials.findCredentials("payments-truststore.jks", "");
+
+        Assertions.assertEquals(List.of("/Payments/Truststore", "/Payments/Server-Keystore", "/Shop/Payments-Gateway"),
+                credentials.stream().map(Credential::getEntry).collect(Collectors.toList()));
+        Assertions.assertEquals(List.of("pass2", "pass1", "pass4"), kdbxCredentials.findPassword("payments-truststore.jks", ""));
+    }
+
+    /**
+     * Given a keystore whose path and repository share words with several entries when looking for its credentials
+     * then the entries sharing both should come first and only the best ranked entries should be returned.
+     */
+    @Test
+    public void tc2_findTopCredentialsByRepositoryAndPath() {
+        ReflectionTestUtils.setField(kdbxCredentials, "maxCandidates", 2);
+
+        List<Credential> credentials = kdbxCredentials.findCredentials("src/main/resources/payments.jks", "shop");
+
+        Assertions.assertEquals(List.of("/Shop/Payments-Gateway", "/Shop/Client"),
+                credentials.stream().map(Credential::getEntry).collect(Collectors.toList()));
+        Assertions.assertTrue(kdbxCredentials.findCredentials("docs/readme.txt", "").isEmpty());
+    }
+
+    /**
+     * Given the path of an entry when retrieving its credential then its password should be returned, and nothing
+     * if the entry does not exist.
+     */
+    @Test
+    public void tc3_getCredentialByEntry() {
+        Assertions.assertEquals(Optional.of("pass3"), kdbxCredentials.getCredential("/Shop/Client").map(credential -> new String(credential.getPassword())));
+        Assertions.assertFalse(kdbxCredentials.getCredential("/Shop/Missing").isPresent());
+    }
+
+    /**
+     * Given a database with nested groups and an entry without password when loading it then entries should be
+     * referenced by the path of all their groups and the entry without password should be left out.
+     */
+    @Test
+    public void tc4_loadNestedGroups() {
+        Assertions.assertEquals(Optional.of("pass5"), kdbxCredentials.getCredential("/Platform/Internal/Legacy")
+                .map(credential -> new String(credential.getPassword())));
+        Assertions.assertFalse(kdbxCredentials.getCredential("/Shop/Empty").isPresent());
+    }
+
+    /**
+     * Given a wrong master password when looking for credentials then no credential should be found.
+     */
+    @Test
+    public void tc5_ignoreWrongMasterPassword() {
+        ReflectionTestUtils.setField(kdbxCredentials, "password", "wrong");
+
+        Assertions.assertTrue(kdbxCredentials.findCredentials("payments-truststore.jks", "").isEmpty());
+        Assertions.assertFalse(kdbxCredentials.getCredential("/Shop/Client").isPresent());
+    }
+
+    /**
+     * Given a keystore sharing a whole word with an entry and a part of a word with another one when looking for its
+     * credentials then the ranked entry should come first, followed by the entry located by a part of a word.
+     */
+    @Test
+    public void tc6_appendSubstringMatchesAfterRankedOnes() {
+        List<Credential> credentials = kdbxCredentials.findCredentials("client-trust.jks", "");
+
+        Assertions.assertEquals(List.of("/Shop/Client", "/Payments/Truststore"),
+                credentials.stream().map(Credential::getEntry).collect(Collectors.toList()));
+        ReflectionTestUtils.setField(kdbxCredentials, "maxCandidates", 1);
+        Assertions.assertEquals(List.of("pass3"), kdbxCredentials.findPassword("client-trust.jks", ""));
+    }
+
+    /**
+     * Given credentials handed over to a caller when the caller wipes them then the passwords held should not be
+     * affected, and once the service is cleared every password held should be wiped.
+     */
+    @Test
+    public void tc7_handOverCopiesAndWipeOnClear() {
+        Credential credential = kdbxCredentials.getCredential("/Shop/Client").orElseThrow();
+        credential.wipe();
+
+        Assertions.assertArrayEquals("pass3".toCharArray(), kdbxCredentials.getCredential("/Shop/Client").orElseThrow().getPassword());
+        Credential held = kdbxCredentials.getCredential("/Shop/Client").orElseThrow();
+        kdbxCredentials.clear();
+        Assertions.assertArrayEquals("pass3".toCharArray(), held.getPassword());
+        Assertions.assertArrayEquals(new char[5], kdbxCredentials.getCredential("/Shop/Client").orElseThrow().getPassword());
+    }
+
+    /**
+     * Given a keystore looked up twice when looking for its credentials then the entries located by each keyword
+     * should be taken from the credentials cache after the first lookup.
+     */
+    @Test
+    public void tc8_locateKeywordOnce() {
+        List<Credential> first = kdbxCredentials.findCredentials("client-trust.jks", "");
+        List<Credential> second = kdbxCredentials.findCredentials("client-trust.jks", "");
+
+        Assertions.assertEquals(first.stream().map(Credential::getEntry).collect(Collectors.toList()),
+                second.stream().map(Credential::getEntry).collect(Collectors.toList()));
+        verify(credentialsCache, times(1)).putLocated(eq("client"), anyList());
+        verify(credentialsCache, times(1)).putLocated(eq("trust"), anyList());
+    }
+}
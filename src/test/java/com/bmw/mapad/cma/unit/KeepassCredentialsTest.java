@@ -0,0 +1,35 @@
+package com.bmw.mapad.cma.unit;
+
+import com.bmw.mapad.cma.credentialsmanagement.CredentialsCache;
+import com.bmw.mapad.cma.credentialsmanagement.CredentialsDatabase;
+import com.bmw.mapad.cma.credentialsmanagement.KeepassCredentialsService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Test class aiming test scenarios in the keepass credentials manager.
+ */
+public class KeepassCredentialsTest {
+
+    /**
+     * Given an entry and a database path holding quotes when building the keepassxc-cli command then each one should
+     * be passed as a single argument, without going through a shell.
+     */
+    @Test
+    public void tc1_passArgumentsWithoutShell() {
+        KeepassCredentialsService keepass = new KeepassCredentialsService(Mockito.mock(CredentialsDatabase.class),
+                new CredentialsCache(600, 100));
+        ReflectionTestUtils.setField(keepass, "database", Paths.get("/tmp/team's.kdbx"));
+
+        ProcessBuilder show = ReflectionTestUtils.invokeMethod(keepass, "makeProcessBuilder", "show", "/Shop/O'Brien'; rm -rf ~");
+        ProcessBuilder locate = ReflectionTestUtils.invokeMethod(keepass, "makeProcessBuilder", "locate", "client");
+
+        Assertions.assertEquals(List.of("keepassxc-cli", "show", "-s", "/tmp/team's.kdbx", "/Shop/O'Brien'; rm -rf ~"), show.command());
+        Assertions.assertEquals(List.of("keepassxc-cli", "locate", "/tmp/team's.kdbx", "client"), locate.command());
+    }
+}
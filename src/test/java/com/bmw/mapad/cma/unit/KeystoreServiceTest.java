@@ -1,26 +1,74 @@
 package com.bmw.mapad.cma.unit;
 
+import com.bmw.mapad.cma.certificateextractor.keystore.CertificateCache;
+import com.bmw.mapad.cma.certificateextractor.keystore.ExtractionCache;
 import com.bmw.mapad.cma.certificateextractor.keystore.KeystoreExporterService;
+import com.bmw.mapad.cma.certificateextractor.keystore.PasswordVerifier;
+import com.bmw.mapad.cma.certificateextractor.keystore.TrustedCertificateReader;
+import com.bmw.mapad.cma.crawler.FilesImporter;
+import com.bmw.mapad.cma.crawler.KeystoreTypeDetector;
 import com.bmw.mapad.cma.entity.Cert;
+import com.bmw.mapad.cma.entity.CertX509;
+import com.bmw.mapad.cma.entity.KeystoreFile;
+import com.bmw.mapad.cma.entity.KeystoreStatus;
+import com.bmw.mapad.cma.entity.KeystoreType;
+import com.bmw.mapad.cma.credentialsmanagement.Credential;
+import com.bmw.mapad.cma.credentialsmanagement.CredentialMapping;
 import com.bmw.mapad.cma.credentialsmanagement.KeepassCredentialsService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.*;
 import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class KeystoreServiceTest {
     @Mock
     KeepassCredentialsService keypassTool;
+    @Spy
+    KeystoreTypeDetector keystoreTypeDetector = new KeystoreTypeDetector();
+    @Spy
+    PasswordVerifier passwordVerifier = new PasswordVerifier();
+    @Spy
+    CertificateCache certificateCache = new CertificateCache();
+    @Spy
+    TrustedCertificateReader trustedCertificateReader = new TrustedCertificateReader(certificateCache);
+    @Mock
+    CredentialMapping credentialMapping;
+    @Mock
+    FilesImporter filesImporter;
+    @Mock
+    ExtractionCache extractionCache;
     @InjectMocks
     KeystoreExporterService keystoreExtractor;
     static String correctPassword = "pass123";
@@ -30,7 +78,7 @@ public class KeystoreServiceTest {
      */
     @Test
     public void tc1_ecp1_loadKeystore() {
-        when(keypassTool.findPassword("sampleCertificates/keystore.with.60.days.jks","")).thenReturn(List.of("wrongPass1", correctPassword));
+        when(keypassTool.findCredentials("sampleCertificates/keystore.with.60.days.jks","")).thenReturn(List.of(new Credential("wrong", "wrongPass1"), new Credential("correct", correctPassword)));
 
         //Given
         String pathForKeystoreFile = "sampleCertificates/keystore.with.60.days.jks";
@@ -44,7 +92,7 @@ public class KeystoreServiceTest {
      */
     @Test
     public void tc2_ecp2_loadKeystore() throws KeyStoreException, CertificateException, IOException, NoSuchAlgorithmException {
-        when(keypassTool.findPassword("sampleCertificates/keystore.with.60.days.jks","")).thenReturn(List.of("wrongPass1", "wrongPass2"));
+        when(keypassTool.findCredentials("sampleCertificates/keystore.with.60.days.jks","")).thenReturn(List.of(new Credential("wrong", "wrongPass1"), new Credential("wrong2", "wrongPass2")));
 
         //Given
         String pathForKeystoreFile = "sampleCertificates/keystore.with.60.days.jks";
@@ -53,4 +101,374 @@ public class KeystoreServiceTest {
         Assertions.assertDoesNotThrow(() -> keystoreExtractor.loadFile(pathForKeystoreFile,""));
         Assertions.assertFalse(keystoreExtractor.loadFile(pathForKeystoreFile,"").isPresent());
     }
-}
\ No newline at end of file
+
+    /**
+     * Return the content of an empty keystore of the type passed as argument, protected by the correct password.
+     */
+    private byte[] createKeystore(String type) throws Exception {
+        KeyStore keystore = KeyStore.getInstance(type);
+        keystore.load(null, null);
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        keystore.store(content, correctPassword.toCharArray());
+        return content.toByteArray();
+    }
+
+    /**
+     * Test load a PKCS12 keystore: its type is detected from the header and it is unlocked with the correct password.
+     */
+    @Test
+    public void tc3_ecp1_detectKeystoreType() throws Exception {
+        when(keypassTool.findCredentials("certs/keystore.p12","")).thenReturn(List.of(new Credential("wrong", "wrongPass1"), new Credential("correct", correctPassword)));
+
+        //Given
+        KeystoreFile keystoreFile = new KeystoreFile("certs/keystore.p12", "");
+        keystoreFile.setContent(createKeystore("PKCS12"));
+
+        //When
+        keystoreExtractor.exportCertfromKeystore(keystoreFile);
+
+        //Then
+        Assertions.assertEquals(KeystoreType.PKCS12, keystoreFile.getType());
+        Assertions.assertEquals(KeystoreStatus.UNLOCKED, keystoreFile.getStatus());
+    }
+
+    /**
+     * Test load a truncated keystore: it is reported as unparseable instead of as a keystore without password.
+     */
+    @Test
+    public void tc4_ecp2_reportUnparseableKeystore() throws Exception {
+        when(keypassTool.findCredentials("certs/keystore.jks","")).thenReturn(List.of(new Credential("wrong", "wrongPass1"), new Credential("correct", correctPassword)));
+
+        //Given
+        byte[] content = createKeystore("JKS");
+        KeystoreFile keystoreFile = new KeystoreFile("certs/keystore.jks", "");
+        keystoreFile.setContent(Arrays.copyOf(content, content.length / 2));
+
+        //When
+        List<Cert> certs = keystoreExtractor.exportCertfromKeystore(keystoreFile);
+
+        //Then
+        Assertions.assertTrue(certs.isEmpty());
+        Assertions.assertEquals(KeystoreStatus.UNPARSEABLE, keystoreFile.getStatus());
+    }
+
+    /**
+     * Test load a keystore with a remembered credential: it is unlocked by the remembered entry and the credentials
+     * are not discovered again.
+     */
+    @Test
+    public void tc5_ecp1_useRememberedCredential() throws Exception {
+        //Given
+        KeystoreFile keystoreFile = new KeystoreFile("certs/keystore.jks", "");
+        keystoreFile.setContent(createKeystore("JKS"));
+        when(credentialMapping.lookup(keystoreFile)).thenReturn(Optional.of("correct"));
+        when(keypassTool.getCredential("correct")).thenReturn(Optional.of(new Credential("correct", correctPassword)));
+
+        //When
+        keystoreExtractor.exportCertfromKeystore(keystoreFile);
+
+        //Then
+        Assertions.assertEquals(KeystoreStatus.UNLOCKED, keystoreFile.getStatus());
+        verify(keypassTool, never()).findCredentials(any(), any());
+        verify(credentialMapping).remember(keystoreFile, "correct");
+    }
+
+    /**
+     * Test load a keystore whose remembered credential does not unlock it any more: the credentials are discovered
+     * again and the new entry is remembered.
+     */
+    @Test
+    public void tc6_ecp2_fallBackToDiscovery() throws Exception {
+        //Given
+        KeystoreFile keystoreFile = new KeystoreFile("certs/keystore.jks", "");
+        keystoreFile.setContent(createKeystore("JKS"));
+        when(credentialMapping.lookup(keystoreFile)).thenReturn(Optional.of("outdated"));
+        when(keypassTool.getCredential("outdated")).thenReturn(Optional.of(new Credential("outdated", "wrongPass1")));
+        when(keypassTool.findCredentials("certs/keystore.jks","")).thenReturn(List.of(new Credential("correct", correctPassword)));
+
+        //When
+        keystoreExtractor.exportCertfromKeystore(keystoreFile);
+
+        //Then
+        Assertions.assertEquals(KeystoreStatus.UNLOCKED, keystoreFile.getStatus());
+        verify(credentialMapping).remember(keystoreFile, "correct");
+    }
+
+    /**
+     * Test export the keystores of a repository with a parsing pool: every keystore is unlocked and the repository is
+     * released.
+     */
+    @Test
+    public void tc7_ecp1_parseKeystoresInParallel() throws Exception {
+        //Given
+        List<KeystoreFile> keystores = List.of(new KeystoreFile("certs/a.jks", ""), new KeystoreFile("certs/b.p12", ""),
+                new KeystoreFile("certs/c.jks", ""));
+        for (KeystoreFile keystoreFile : keystores) {
+            keystoreFile.setType(keystoreFile.getPathFile().endsWith("p12") ? KeystoreType.PKCS12 : KeystoreType.JKS);
+            keystoreFile.setContent(createKeystore(keystoreFile.getType().name()));
+        }
+        ReflectionTestUtils.setField(keystoreExtractor, "workers", 1);
+        ReflectionTestUtils.setField(keystoreExtractor, "parsingThreads", 2);
+        ReflectionTestUtils.setField(keystoreExtractor, "extensions", new String[]{"jks", "p12"});
+        when(filesImporter.listRepositories()).thenReturn(List.of("repository"));
+        when(filesImporter.collectKeystores(any(), anyList())).thenReturn(keystores);
+        when(keypassTool.findCredentials(any(), any())).thenAnswer(invocation -> List.of(new Credential("correct", correctPassword)));
+
+        //When
+        keystoreExtractor.exportAllCert();
+
+        //Then
+        Assertions.assertTrue(keystores.stream().allMatch(keystoreFile -> keystoreFile.getStatus() == KeystoreStatus.UNLOCKED));
+        verify(filesImporter).release("repository");
+    }
+
+    /**
+     * Test export a truststore: its certificates are read without looking for a password.
+     */
+    @Test
+    public void tc8_ecp1_readTruststoreWithoutPassword() throws Exception {
+        //Given
+        KeyStore truststore = KeyStore.getInstance("JKS");
+        truststore.load(null, null);
+        truststore.setCertificateEntry("ca", CertificateFactory.getInstance("X.509").generateCertificate(
+                new ByteArrayInputStream(CertificateReaderTest.FIRST_CERTIFICATE.getBytes(StandardCharsets.US_ASCII))));
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        truststore.store(content, correctPassword.toCharArray());
+        KeystoreFile keystoreFile = new KeystoreFile("certs/truststore.jks", "");
+        keystoreFile.setContent(content.toByteArray());
+
+        //When
+        List<Cert> certs = keystoreExtractor.exportCertfromKeystore(keystoreFile);
+
+        //Then
+        Assertions.assertEquals(1, certs.size());
+        Assertions.assertEquals("ca", certs.get(0).getAlias());
+        Assertions.assertEquals("CN=one.example.com", ((CertX509) certs.get(0)).getSubject());
+        Assertions.assertEquals(KeystoreStatus.UNLOCKED, keystoreFile.getStatus());
+        verify(keypassTool, never()).findCredentials(any(), any());
+    }
+
+    /**
+     * Test export a keystore exceeding its time budget: it is cancelled and reported as timed out, while the other
+     * keystores of the repository are still exported.
+     */
+    @Test
+    public void tc9_ecp2_cancelKeystoreOverBudget() throws Exception {
+        //Given
+        KeystoreFile slowKeystore = new KeystoreFile("certs/slow.jks", "");
+        KeystoreFile keystore = new KeystoreFile("certs/fast.jks", "");
+        for (KeystoreFile keystoreFile : List.of(slowKeystore, keystore)) {
+            keystoreFile.setType(KeystoreType.JKS);
+            keystoreFile.setContent(createKeystore("JKS"));
+        }
+        ReflectionTestUtils.setField(keystoreExtractor, "workers", 1);
+        ReflectionTestUtils.setField(keystoreExtractor, "parsingThreads", 2);
+        ReflectionTestUtils.setField(keystoreExtractor, "fileTimeout", 1L);
+        ReflectionTestUtils.setField(keystoreExtractor, "extensions", new String[]{"jks"});
+        when(filesImporter.listRepositories()).thenReturn(List.of("repository"));
+        when(filesImporter.collectKeystores(any(), anyList())).thenReturn(List.of(slowKeystore, keystore));
+        when(keypassTool.findCredentials("certs/fast.jks", "")).thenReturn(List.of(new Credential("correct", correctPassword)));
+        when(keypassTool.findCredentials("certs/slow.jks", "")).thenAnswer(invocation -> {
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of(new Credential("correct", correctPassword));
+        });
+
+        //When
+        long start = System.nanoTime();
+        keystoreExtractor.exportAllCert();
+
+        //Then
+        Assertions.assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        Assertions.assertEquals(KeystoreStatus.TIMED_OUT, slowKeystore.getStatus());
+        Assertions.assertEquals(KeystoreStatus.UNLOCKED, keystore.getStatus());
+    }
+
+    /**
+     * Test export the keystores of a repository: their candidate credentials are resolved in a single batch and not
+     * looked up once per keystore.
+     */
+    @Test
+    public void tc10_ecp1_resolveCredentialsPerRepository() throws Exception {
+        //Given
+        List<KeystoreFile> keystores = List.of(new KeystoreFile("certs/a.jks", ""), new KeystoreFile("certs/b.jks", ""));
+        for (KeystoreFile keystoreFile : keystores) {
+            keystoreFile.setType(KeystoreType.JKS);
+            keystoreFile.setContent(createKeystore("JKS"));
+        }
+        ReflectionTestUtils.setField(keystoreExtractor, "workers", 1);
+        ReflectionTestUtils.setField(keystoreExtractor, "parsingThreads", 2);
+        ReflectionTestUtils.setField(keystoreExtractor, "extensions", new String[]{"jks"});
+        when(filesImporter.listRepositories()).thenReturn(List.of("repository"));
+        when(filesImporter.collectKeystores(any(), anyList())).thenReturn(keystores);
+        when(keypassTool.resolveCredentials(List.of("certs/a.jks", "certs/b.jks"), "")).thenReturn(Map.of(
+                "certs/a.jks", List.of(new Credential("correct", correctPassword)),
+                "certs/b.jks", List.of(new Credential("wrong", "wrongPass1"), new Credential("correct", correctPassword))));
+
+        //When
+        keystoreExtractor.exportAllCert();
+
+        //Then
+        Assertions.assertTrue(keystores.stream().allMatch(keystoreFile -> keystoreFile.getStatus() == KeystoreStatus.UNLOCKED));
+        verify(keypassTool, never()).findCredentials(any(), any());
+    }
+
+    /**
+     * Return a keystore of the repository passed as argument whose certificates have been extracted before, holding a
+     * single certificate named after the repository.
+     */
+    private KeystoreFile cachedKeystore(String repository) {
+        KeystoreFile keystoreFile = new KeystoreFile(repository + "/keystore.jks", repository);
+        keystoreFile.setType(KeystoreType.JKS);
+        keystoreFile.setBlobId(repository);
+        when(extractionCache.get(keystoreFile)).thenReturn(Optional.of(List.of(CertX509.builder()
+                .serialNumber(BigInteger.ONE)
+                .alias(repository)
+                .startAfter(new Date())
+                .finishBefore(new Date())
+                .build())));
+        return keystoreFile;
+    }
+
+    /**
+     * Test export several repositories with a pool of workers: repositories are handled at the same time, a failing
+     * repository does not affect the others and the certificates are merged following the order of the repositories.
+     */
+    @Test
+    public void tc11_ecp1_crawlRepositoriesConcurrently() throws Exception {
+        //Given a first repository which is only collected once the second one is being collected
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        ReflectionTestUtils.setField(keystoreExtractor, "workers", 3);
+        ReflectionTestUtils.setField(keystoreExtractor, "parsingThreads", 1);
+        ReflectionTestUtils.setField(keystoreExtractor, "extensions", new String[]{"jks"});
+        when(filesImporter.listRepositories()).thenReturn(List.of("first", "second", "broken"));
+        KeystoreFile firstKeystore = cachedKeystore("first");
+        KeystoreFile secondKeystore = cachedKeystore("second");
+        when(filesImporter.collectKeystores(eq("first"), anyList())).thenAnswer(invocation ->
+                secondStarted.await(5, TimeUnit.SECONDS) ? List.of(firstKeystore) : List.of());
+        when(filesImporter.collectKeystores(eq("second"), anyList())).thenAnswer(invocation -> {
+            secondStarted.countDown();
+            return List.of(secondKeystore);
+        });
+        when(filesImporter.collectKeystores(eq("broken"), anyList())).thenThrow(new IllegalStateException("clone failed"));
+
+        //When
+        List<Cert> certs = keystoreExtractor.exportAllCert();
+
+        //Then
+        Assertions.assertEquals(List.of("first", "second"), certs.stream().map(Cert::getAlias).collect(Collectors.toList()));
+        verify(filesImporter).release("first");
+        verify(filesImporter).release("second");
+        verify(filesImporter).release("broken");
+    }
+
+    /**
+     * Test export a repository exceeding its time budget: the keystores still pending are cancelled, while the
+     * certificates of the keystores which finished meanwhile are kept.
+     */
+    @Test
+    public void tc12_ecp2_keepFinishedKeystoresOverRepositoryBudget() throws Exception {
+        //Given a first keystore which never finishes and a second one which finishes straight away
+        ReflectionTestUtils.setField(keystoreExtractor, "workers", 1);
+        ReflectionTestUtils.setField(keystoreExtractor, "parsingThreads", 2);
+        ReflectionTestUtils.setField(keystoreExtractor, "repositoryTimeout", 1L);
+        ReflectionTestUtils.setField(keystoreExtractor, "extensions", new String[]{"jks"});
+        when(filesImporter.listRepositories()).thenReturn(List.of("repository"));
+        KeystoreFile slowKeystore = new KeystoreFile("slow/keystore.jks", "slow");
+        slowKeystore.setType(KeystoreType.JKS);
+        slowKeystore.setBlobId("slow");
+        slowKeystore.setContent(createKeystore("JKS"));
+        when(extractionCache.get(slowKeystore)).thenReturn(Optional.empty());
+        when(keypassTool.findCredentials("slow/keystore.jks", "slow")).thenAnswer(invocation -> {
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of(new Credential("correct", correctPassword));
+        });
+        KeystoreFile fastKeystore = cachedKeystore("fast");
+        when(filesImporter.collectKeystores(any(), anyList())).thenReturn(List.of(slowKeystore, fastKeystore));
+
+        //When
+        List<Cert> certs = keystoreExtractor.exportAllCert();
+
+        //Then
+        Assertions.assertEquals(List.of("fast"), certs.stream().map(Cert::getAlias).collect(Collectors.toList()));
+        Assertions.assertEquals(KeystoreStatus.TIMED_OUT, slowKeystore.getStatus());
+        verify(filesImporter).release("repository");
+    }
+
+    /**
+     * Test export a keystore read from disk whose content has been extracted before: its blob id is computed before
+     * the credentials are resolved, so no credentials are looked up for it.
+     */
+    @Test
+    public void tc13_ecp1_skipCredentialsOfCachedKeystoreOnDisk(@TempDir Path directory) throws Exception {
+        //Given
+        Path pathFile = directory.resolve("keystore.jks");
+        Files.write(pathFile, createKeystore("JKS"));
+        ReflectionTestUtils.setField(keystoreExtractor, "workers", 1);
+        ReflectionTestUtils.setField(keystoreExtractor, "parsingThreads", 1);
+        ReflectionTestUtils.setField(keystoreExtractor, "extensions", new String[]{"jks"});
+        KeystoreFile keystoreFile = new KeystoreFile(pathFile.toString(), "");
+        keystoreFile.setType(KeystoreType.JKS);
+        when(filesImporter.listRepositories()).thenReturn(List.of("repository"));
+        when(filesImporter.collectKeystores(any(), anyList())).thenReturn(List.of(keystoreFile));
+        when(extractionCache.getBlobId(any(Path.class))).thenReturn("blob");
+        when(extractionCache.contains("blob")).thenReturn(true);
+        when(extractionCache.get(keystoreFile)).thenReturn(Optional.of(List.of(CertX509.builder()
+                .serialNumber(BigInteger.ONE)
+                .alias("cached")
+                .startAfter(new Date())
+                .finishBefore(new Date())
+                .build())));
+
+        //When
+        List<Cert> certs = keystoreExtractor.exportAllCert();
+
+        //Then
+        Assertions.assertEquals(List.of("cached"), certs.stream().map(Cert::getAlias).collect(Collectors.toList()));
+        Assertions.assertEquals("blob", keystoreFile.getBlobId());
+        verify(keypassTool, never()).resolveCredentials(anyList(), any());
+    }
+
+    /**
+     * Test export a truststore and a keystore read from disk: only the keystore needing a password is resolved in the
+     * batch, and the content of neither is kept once exported.
+     */
+    @Test
+    public void tc14_ecp1_leaveTruststoresOutOfCredentialsBatch(@TempDir Path directory) throws Exception {
+        //Given
+        KeyStore truststore = KeyStore.getInstance("JKS");
+        truststore.load(null, null);
+        truststore.setCertificateEntry("ca", CertificateFactory.getInstance("X.509").generateCertificate(
+                new ByteArrayInputStream(CertificateReaderTest.FIRST_CERTIFICATE.getBytes(StandardCharsets.US_ASCII))));
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        truststore.store(content, correctPassword.toCharArray());
+        Path truststorePath = Files.write(directory.resolve("truststore.jks"), content.toByteArray());
+        Path keystorePath = Files.write(directory.resolve("keystore.jks"), createKeystore("JKS"));
+        List<KeystoreFile> keystores = List.of(new KeystoreFile(truststorePath.toString(), ""),
+                new KeystoreFile(keystorePath.toString(), ""));
+        keystores.forEach(keystoreFile -> keystoreFile.setType(KeystoreType.JKS));
+        ReflectionTestUtils.setField(keystoreExtractor, "workers", 1);
+        ReflectionTestUtils.setField(keystoreExtractor, "parsingThreads", 1);
+        ReflectionTestUtils.setField(keystoreExtractor, "extensions", new String[]{"jks"});
+        when(filesImporter.listRepositories()).thenReturn(List.of("repository"));
+        when(filesImporter.collectKeystores(any(), anyList())).thenReturn(keystores);
+        when(extractionCache.getBlobId(any(Path.class))).thenAnswer(invocation -> invocation.getArgument(0).toString());
+        when(keypassTool.resolveCredentials(List.of(keystorePath.toString()), "")).thenReturn(Map.of(
+                keystorePath.toString(), List.of(new Credential("correct", correctPassword))));
+
+        //When
+        keystoreExtractor.exportAllCert();
+
+        //Then
+        Assertions.assertTrue(keystores.stream().allMatch(keystoreFile -> keystoreFile.getStatus() == KeystoreStatus.UNLOCKED));
+        Assertions.assertTrue(keystores.stream().allMatch(keystoreFile -> keystoreFile.getContent() == null));
+        verify(keypassTool, never()).findCredentials(any(), any());
+    }
+}
@@ -0,0 +1,43 @@
+package com.bmw.mapad.cma.unit;
+
+import com.bmw.mapad.cma.crawler.KeystoreTypeDetector;
+import com.bmw.mapad.cma.entity.KeystoreType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+
+/**
+ * Test class aiming test scenarios in the keystore type detector.
+ */
+public class KeystoreTypeDetectorTest {
+    KeystoreTypeDetector keystoreTypeDetector = new KeystoreTypeDetector();
+
+    /**
+     * Given keystores created by the platform when detecting their type then the format written should be returned
+     * regardless of any extension.
+     */
+    @Test
+    public void tc1_detectKeystores() throws Exception {
+        for (KeystoreType type : new KeystoreType[]{KeystoreType.JKS, KeystoreType.JCEKS, KeystoreType.PKCS12}) {
+            KeyStore keystore = KeyStore.getInstance(type.name());
+            keystore.load(null, null);
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            keystore.store(content, "changeit".toCharArray());
+            Assertions.assertEquals(type, keystoreTypeDetector.detect(content.toByteArray()));
+        }
+    }
+
+    /**
+     * Given a PEM file and a text file when detecting their type then PEM and UNKNOWN should be returned.
+     */
+    @Test
+    public void tc2_detectOtherFiles() {
+        byte[] pem = "# ca\n-----BEGIN CERTIFICATE-----\nMIIB\n-----END CERTIFICATE-----\n".getBytes(StandardCharsets.US_ASCII);
+        Assertions.assertEquals(KeystoreType.PEM, keystoreTypeDetector.detect(pem));
+        Assertions.assertEquals(KeystoreType.UNKNOWN, keystoreTypeDetector.detect("plain text".getBytes(StandardCharsets.US_ASCII)));
+        Assertions.assertEquals(KeystoreType.UNKNOWN, keystoreTypeDetector.detect(new byte[0]));
+    }
+}
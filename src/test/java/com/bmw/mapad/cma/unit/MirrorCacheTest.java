@@ -0,0 +1,167 @@
+package com.bmw.mapad.cma.unit;
+
+import com.bmw.mapad.cma.crawler.MirrorCache;
+import com.bmw.mapad.cma.utils.Utils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Test class aiming test scenarios in the mirror cache, mirroring a local repository.
+ */
+public class MirrorCacheTest {
+    @TempDir
+    Path remote;
+    @TempDir
+    Path mirrors;
+    Git origin;
+    String urlRepo;
+    MirrorCache mirrorCache;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Path repository = remote.resolve("service.git");
+        origin = Git.init().setDirectory(repository.toFile()).setInitialBranch("main").call();
+        commit("first version");
+        urlRepo = "file://" + repository;
+
+        mirrorCache = new MirrorCache(new Utils());
+        ReflectionTestUtils.setField(mirrorCache, "directory", mirrors.toString());
+        ReflectionTestUtils.setField(mirrorCache, "budget", 10240L);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        origin.close();
+    }
+
+    /**
+     * Commit a new version of a file to the origin repository.
+     */
+    private ObjectId commit(String content) throws Exception {
+        Files.writeString(origin.getRepository().getWorkTree().toPath().resolve("README.md"), content);
+        origin.add().addFilepattern(".").call();
+        return origin.commit().setMessage(content).setAuthor("cma", "cma@example.com").call().getId();
+    }
+
+    /**
+     * Bring the mirror of the origin repository up to date and return the commit its HEAD points to.
+     */
+    private ObjectId update() throws Exception {
+        try (Repository mirror = mirrorCache.update(urlRepo, Paths.get("team", "service"),
+                new UsernamePasswordCredentialsProvider("user", "token"))) {
+            return mirror.resolve(Constants.HEAD);
+        }
+    }
+
+    /**
+     * Given a repository without mirror when updating it then the mirror should be cloned.
+     */
+    @Test
+    public void shouldCloneMirror_WhenMissing() throws Exception {
+        ObjectId head = origin.getRepository().resolve(Constants.HEAD);
+
+        Assertions.assertEquals(head, update());
+        Assertions.assertTrue(Files.isDirectory(mirrors.resolve("team/service.git/objects")));
+    }
+
+    /**
+     * Given a repository already mirrored when new commits are pushed then the existing mirror should be fetched
+     * instead of cloned again.
+     */
+    @Test
+    public void shouldFetchMirror_WhenAlreadyCloned() throws Exception {
+        update();
+        Path marker = mirrors.resolve("team/service.git/marker");
+        Files.writeString(marker, "kept by incremental fetches");
+        ObjectId head = commit("second version");
+
+        Assertions.assertEquals(head, update());
+        Assertions.assertTrue(Files.exists(marker));
+    }
+
+    /**
+     * Given a mirror folder which is not a repository any more when updating it then it should be cloned again.
+     */
+    @Test
+    public void shouldCloneMirrorAgain_WhenMirrorIsInvalid() throws Exception {
+        Path stale = mirrors.resolve("team/service.git");
+        Files.createDirectories(stale);
+        Files.writeString(stale.resolve("leftover"), "not a repository");
+        ObjectId head = origin.getRepository().resolve(Constants.HEAD);
+
+        Assertions.assertEquals(head, update());
+        Assertions.assertFalse(Files.exists(stale.resolve("leftover")));
+    }
+
+    /**
+     * Given a new mirror when it is cloned then its HEAD should follow the remote default branch and its automatic gc
+     * should run in the foreground, so nothing holds the mirror once it is handed over.
+     */
+    @Test
+    public void shouldRunGcInForeground_WhenMirrorIsCloned() throws Exception {
+        update();
+
+        try (Git git = Git.open(mirrors.resolve("team/service.git").toFile())) {
+            Repository mirror = git.getRepository();
+            Assertions.assertEquals("refs/heads/main", mirror.getFullBranch());
+            Assertions.assertFalse(mirror.getConfig().getBoolean(ConfigConstants.CONFIG_GC_SECTION,
+                    ConfigConstants.CONFIG_KEY_AUTODETACH, true));
+        }
+        Assertions.assertFalse(Files.exists(mirrors.resolve("team/service.git/gc.log.lock")));
+    }
+
+    /**
+     * Given a repository with pull request refs when mirroring it then only its branches and tags should be fetched.
+     */
+    @Test
+    public void shouldFetchOnlyBranchesAndTags_WhenMirroring() throws Exception {
+        ObjectId head = origin.getRepository().resolve(Constants.HEAD);
+        RefUpdate pullRequest = origin.getRepository().updateRef("refs/pull-requests/1/from");
+        pullRequest.setNewObjectId(head);
+        pullRequest.update();
+        origin.tag().setName("v1").call();
+
+        update();
+
+        try (Git git = Git.open(mirrors.resolve("team/service.git").toFile())) {
+            Repository mirror = git.getRepository();
+            Assertions.assertNotNull(mirror.exactRef("refs/heads/main"));
+            Assertions.assertNotNull(mirror.exactRef("refs/tags/v1"));
+            Assertions.assertNull(mirror.exactRef("refs/pull-requests/1/from"));
+        }
+    }
+
+    /**
+     * Given mirrors of a previous run beyond the disk budget, one of them without owner, when updating a mirror then
+     * the mirrors not used in this run should be evicted, whatever their depth.
+     */
+    @Test
+    public void shouldEvictUnusedMirrors_WhenBudgetExceeded() throws Exception {
+        Path ownerless = Files.createDirectories(mirrors.resolve("legacy.git"));
+        Files.write(ownerless.resolve("pack"), new byte[1024]);
+        Path unused = Files.createDirectories(mirrors.resolve("other/unused.git"));
+        Files.write(unused.resolve("pack"), new byte[1024]);
+        ReflectionTestUtils.setField(mirrorCache, "budget", 0L);
+
+        update();
+
+        Assertions.assertFalse(Files.exists(ownerless));
+        Assertions.assertFalse(Files.exists(unused));
+        Assertions.assertTrue(Files.isDirectory(mirrors.resolve("team/service.git")));
+    }
+}
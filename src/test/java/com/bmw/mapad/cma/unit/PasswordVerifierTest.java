@@ -0,0 +1,63 @@
+package com.bmw.mapad.cma.unit;
+
+import com.bmw.mapad.cma.certificateextractor.keystore.PasswordVerifier;
+import com.bmw.mapad.cma.entity.KeystoreType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test class aiming test scenarios in the password verifier.
+ */
+public class PasswordVerifierTest {
+    PasswordVerifier passwordVerifier = new PasswordVerifier();
+    static String correctPassword = "pass123";
+
+    /**
+     * Return forty wrong candidates with the correct password in the middle of them.
+     */
+    private List<char[]> getCandidates() {
+        List<char[]> candidates = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            candidates.add(("wrongPass" + i).toCharArray());
+            if (i == 20)
+                candidates.add(correctPassword.toCharArray());
+        }
+        return candidates;
+    }
+
+    /**
+     * Given JKS, JCEKS and PKCS12 keystores when verifying forty one candidates then only the correct password should
+     * pass the integrity check.
+     */
+    @Test
+    public void tc1_filterCandidates() throws Exception {
+        for (KeystoreType type : new KeystoreType[]{KeystoreType.JKS, KeystoreType.JCEKS, KeystoreType.PKCS12}) {
+            KeyStore keystore = KeyStore.getInstance(type.name());
+            keystore.load(null, null);
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            keystore.store(content, correctPassword.toCharArray());
+
+            List<char[]> passwords = passwordVerifier.filterCandidates(type, content.toByteArray(), getCandidates());
+
+            Assertions.assertEquals(1, passwords.size(), type.name());
+            Assertions.assertEquals(correctPassword, new String(passwords.get(0)));
+        }
+    }
+
+    /**
+     * Given a content whose integrity cannot be checked when verifying the candidates then none should be discarded.
+     */
+    @Test
+    public void tc2_keepCandidatesWhenNotVerifiable() {
+        byte[] content = new byte[]{0x30, 0x03, 0x02, 0x01, 0x03};
+
+        List<char[]> passwords = passwordVerifier.filterCandidates(KeystoreType.PKCS12, content, getCandidates());
+
+        Assertions.assertEquals(41, passwords.size());
+    }
+}
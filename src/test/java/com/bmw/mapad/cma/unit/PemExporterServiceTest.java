@@ -0,0 +1,111 @@
+package com.bmw.mapad.cma.unit;
+
+import com.bmw.mapad.cma.certificateextractor.keystore.CertificateCache;
+import com.bmw.mapad.cma.certificateextractor.pem.CertificateReader;
+import com.bmw.mapad.cma.certificateextractor.pem.PemExporterService;
+import com.bmw.mapad.cma.crawler.ArchiveScanner;
+import com.bmw.mapad.cma.crawler.BitbucketDiscoveryService;
+import com.bmw.mapad.cma.crawler.BitbucketImporterService;
+import com.bmw.mapad.cma.crawler.FileScanner;
+import com.bmw.mapad.cma.crawler.KeystoreTypeDetector;
+import com.bmw.mapad.cma.crawler.MirrorCache;
+import com.bmw.mapad.cma.credentialsmanagement.CredentialsDatabase;
+import com.bmw.mapad.cma.entity.Cert;
+import com.bmw.mapad.cma.utils.Utils;
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.cert.CertificateFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Test class aiming test scenarios in the PEM exporter, reading the certificates of a local repository.
+ */
+public class PemExporterServiceTest {
+    @TempDir
+    Path remote;
+    @TempDir
+    Path mirrors;
+    String urlRepo;
+    BitbucketImporterService importer;
+    PemExporterService pemExporterService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Path repository = remote.resolve("team/service.git");
+        try (Git git = Git.init().setDirectory(repository.toFile()).setInitialBranch("main").call()) {
+            Files.createDirectories(repository.resolve("certs"));
+            Files.writeString(repository.resolve("certs/one.pem"), CertificateReaderTest.FIRST_CERTIFICATE);
+            Files.write(repository.resolve("certs/two.der"), CertificateFactory.getInstance("X.509")
+                    .generateCertificate(new ByteArrayInputStream(
+                            CertificateReaderTest.SECOND_CERTIFICATE.getBytes(StandardCharsets.US_ASCII)))
+                    .getEncoded());
+            Files.writeString(repository.resolve("certs/notes.crt"), "0 certificates are kept here");
+            Files.writeString(repository.resolve("README.md"), "service");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("certificates").setAuthor("cma", "cma@example.com").call();
+        }
+        urlRepo = "file://" + repository;
+
+        FileScanner fileScanner = new FileScanner();
+        ReflectionTestUtils.setField(fileScanner, "pruneDirs", new String[]{".git"});
+        KeystoreTypeDetector keystoreTypeDetector = new KeystoreTypeDetector();
+        MirrorCache mirrorCache = new MirrorCache(new Utils());
+        ReflectionTestUtils.setField(mirrorCache, "directory", mirrors.toString());
+        ReflectionTestUtils.setField(mirrorCache, "budget", 10240L);
+        CredentialsDatabase credentialsDatabase = new CredentialsDatabase();
+        ReflectionTestUtils.setField(credentialsDatabase, "pathFile", "");
+        importer = new BitbucketImporterService(new Utils(), mirrorCache, fileScanner, keystoreTypeDetector,
+                Mockito.mock(BitbucketDiscoveryService.class), new ArchiveScanner(keystoreTypeDetector),
+                credentialsDatabase);
+        ReflectionTestUtils.setField(importer, "repositories", new String[]{urlRepo});
+        ReflectionTestUtils.setField(importer, "user", "user");
+        ReflectionTestUtils.setField(importer, "token", "token");
+        ReflectionTestUtils.setField(importer, "certsToIgnore", new String[]{});
+        ReflectionTestUtils.setField(importer, "cloneMode", "mirror");
+        ReflectionTestUtils.setField(importer, "cloneModes", new String[]{});
+
+        CertificateCache certificateCache = new CertificateCache();
+        ReflectionTestUtils.setField(certificateCache, "maxEntries", 100);
+        pemExporterService = new PemExporterService(importer, new CertificateReader(), certificateCache);
+        ReflectionTestUtils.setField(pemExporterService, "workers", 2);
+        ReflectionTestUtils.setField(pemExporterService, "extensions", new String[]{"pem", "crt", "cer", "der"});
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        importer.release(urlRepo);
+        Files.deleteIfExists(Paths.get("projects/team"));
+    }
+
+    /**
+     * Given a repository holding a PEM file, a DER file and a text file starting with '0' when exporting its
+     * certificates then the certificates of both encodings should be returned, the text file should be read as PEM and
+     * the repository should be read through its mirror as configured.
+     */
+    @Test
+    public void shouldExportPemAndDerCertificates_WhenFoundInRepository() {
+        List<Cert> certs = pemExporterService.exportAllCert();
+
+        Map<String, String> sources = new TreeMap<>();
+        certs.forEach(cert -> sources.put(cert.getAlias(), Paths.get(cert.getSource()).getFileName().toString()));
+        Assertions.assertEquals(Map.of("CN=one.example.com", "one.pem", "CN=two.example.com", "two.der"), sources);
+        Assertions.assertEquals(2, certs.size());
+        Assertions.assertTrue(certs.stream().allMatch(cert -> "service".equals(cert.getProject())));
+        Assertions.assertTrue(Files.isDirectory(mirrors.resolve("team/service.git/objects")));
+        Assertions.assertFalse(Files.exists(Paths.get("projects/team/service")));
+    }
+}
@@ -0,0 +1,162 @@
+package com.bmw.mapad.cma.unit;
+
+import com.bmw.mapad.cma.certificateextractor.keystore.CertificateCache;
+import com.bmw.mapad.cma.certificateextractor.keystore.CertificateSummary;
+import com.bmw.mapad.cma.certificateextractor.keystore.TrustedCertificateReader;
+import com.bmw.mapad.cma.entity.KeystoreType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Test class aiming test scenarios in the lightweight truststore reader.
+ */
+public class TrustedCertificateReaderTest {
+    CertificateCache certificateCache;
+    TrustedCertificateReader trustedCertificateReader;
+
+    @BeforeEach
+    public void setUp() {
+        certificateCache = new CertificateCache();
+        ReflectionTestUtils.setField(certificateCache, "maxEntries", 100);
+        trustedCertificateReader = new TrustedCertificateReader(certificateCache);
+    }
+
+    /**
+     * Return the content of a keystore holding the test certificates as trusted entries.
+     */
+    private byte[] createTruststore(String type, KeyStore.Entry extraEntry) throws Exception {
+        return createTruststore(type, extraEntry, "changeit".toCharArray());
+    }
+
+    /**
+     * Return the content of a PKCS#12 truststore whose certificates are stored as plain data, as keytool does with
+     * -J-Dkeystore.pkcs12.certProtectionAlgorithm=NONE.
+     */
+    private byte[] createPlainPkcs12Truststore() throws Exception {
+        System.setProperty("keystore.pkcs12.certProtectionAlgorithm", "NONE");
+        try {
+            return createTruststore("PKCS12", null, "changeit".toCharArray());
+        } finally {
+            System.clearProperty("keystore.pkcs12.certProtectionAlgorithm");
+        }
+    }
+
+    /**
+     * Return the content of a keystore holding the test certificates as trusted entries, stored with the password
+     * passed as argument.
+     */
+    private byte[] createTruststore(String type, KeyStore.Entry extraEntry, char[] password) throws Exception {
+        KeyStore keystore = KeyStore.getInstance(type);
+        keystore.load(null, null);
+        CertificateFactory factory = CertificateFactory.getInstance("X.509");
+        String bundle = CertificateReaderTest.FIRST_CERTIFICATE + CertificateReaderTest.SECOND_CERTIFICATE;
+        int i = 0;
+        for (Certificate certificate : factory.generateCertificates(new ByteArrayInputStream(bundle.getBytes(StandardCharsets.US_ASCII))))
+            keystore.setCertificateEntry("cert" + i++, certificate);
+        if (extraEntry != null)
+            keystore.setEntry("secret", extraEntry, new KeyStore.PasswordProtection("changeit".toCharArray()));
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        keystore.store(content, password);
+        return content.toByteArray();
+    }
+
+    /**
+     * Given a JKS truststore when reading it then the summary of each certificate should match the certificate
+     * loaded through the JCA.
+     */
+    @Test
+    public void tc1_readJksTruststore() throws Exception {
+        byte[] content = createTruststore("JKS", null);
+        KeyStore keystore = KeyStore.getInstance("JKS");
+        keystore.load(new ByteArrayInputStream(content), null);
+
+        Optional<Map<String, CertificateSummary>> certificates = trustedCertificateReader.read(KeystoreType.JKS, content);
+
+        Assertions.assertTrue(certificates.isPresent());
+        Assertions.assertEquals(2, certificates.get().size());
+        for (Map.Entry<String, CertificateSummary> entry : certificates.get().entrySet()) {
+            X509Certificate certificate = (X509Certificate) keystore.getCertificate(entry.getKey());
+            Assertions.assertEquals(certificate.getSerialNumber(), entry.getValue().getSerialNumber());
+            Assertions.assertEquals(certificate.getNotBefore(), entry.getValue().getNotBefore());
+            Assertions.assertEquals(certificate.getNotAfter(), entry.getValue().getNotAfter());
+            Assertions.assertEquals(certificate.getSubjectX500Principal().getName(), entry.getValue().getSubject());
+            Assertions.assertEquals(CertificateSummary.of(certificate).getFingerprint(), entry.getValue().getFingerprint());
+        }
+    }
+
+    /**
+     * Given a keystore holding a secret key or a truncated truststore when reading it then it should be left to the
+     * JCA.
+     */
+    @Test
+    public void tc2_fallBackToJca() throws Exception {
+        byte[] content = createTruststore("JCEKS", new KeyStore.SecretKeyEntry(new SecretKeySpec(new byte[16], "AES")));
+        Assertions.assertFalse(trustedCertificateReader.read(KeystoreType.JCEKS, content).isPresent());
+
+        byte[] truststore = createTruststore("JKS", null);
+        Assertions.assertFalse(trustedCertificateReader.read(KeystoreType.JKS, Arrays.copyOf(truststore, truststore.length - 30)).isPresent());
+    }
+
+    /**
+     * Given the same certificates in a JKS and a JCEKS truststore when reading both then the summaries should be
+     * decoded once and shared.
+     */
+    @Test
+    public void tc3_shareIdenticalCertificates() throws Exception {
+        Map<String, CertificateSummary> jks = trustedCertificateReader.read(KeystoreType.JKS, createTruststore("JKS", null)).orElseThrow();
+        Map<String, CertificateSummary> jceks = trustedCertificateReader.read(KeystoreType.JCEKS, createTruststore("JCEKS", null)).orElseThrow();
+
+        Assertions.assertSame(jks.get("cert0"), jceks.get("cert0"));
+        Assertions.assertSame(jks.get("cert1"), jceks.get("cert1"));
+        Assertions.assertNotSame(jks.get("cert0"), jks.get("cert1"));
+    }
+
+    /**
+     * Given a PKCS#12 truststore whose certificates are not encrypted when reading it then its trusted certificates should be
+     * returned by alias.
+     */
+    @Test
+    public void tc4_readPkcs12Truststore() throws Exception {
+        byte[] content = createPlainPkcs12Truststore();
+
+        Optional<Map<String, CertificateSummary>> certificates = trustedCertificateReader.read(KeystoreType.PKCS12, content);
+
+        Assertions.assertTrue(certificates.isPresent());
+        Assertions.assertEquals(Set.of("cert0", "cert1"), certificates.get().keySet());
+    }
+
+    /**
+     * Given a PKCS#12 keystore whose certificates are not marked as trusted when reading it then it should be left to
+     * the JCA, which would not report them as trusted entries either.
+     */
+    @Test
+    public void tc5_fallBackToJca_WhenPkcs12CertificateNotTrusted() throws Exception {
+        byte[] content = createPlainPkcs12Truststore();
+        byte[] trustedKeyUsage = {0x06, 0x0c, 0x60, (byte) 0x86, 0x48, 0x01, (byte) 0x86, (byte) 0xf9, 0x66, (byte) 0xad, (byte) 0xca, 0x7b, 0x01, 0x01};
+        int replaced = 0;
+        for (int i = 0; i + trustedKeyUsage.length <= content.length; i++) {
+            if (Arrays.equals(content, i, i + trustedKeyUsage.length, trustedKeyUsage, 0, trustedKeyUsage.length)) {
+                content[i + trustedKeyUsage.length - 1] = 0x02;
+                replaced++;
+            }
+        }
+
+        Assertions.assertEquals(2, replaced);
+        Assertions.assertFalse(trustedCertificateReader.read(KeystoreType.PKCS12, content).isPresent());
+    }
+}